@@ -0,0 +1,366 @@
+package com.github.shtratos.subsetsum;
+
+import com.google.common.base.Preconditions;
+import com.google.common.base.Stopwatch;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.io.CountingOutputStream;
+import pl.edu.icm.jlargearrays.ConcurrencyUtils;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Command line driver solving a batch of instances from a binary file (see {@link InstanceFileReader}).
+ * <p>
+ * Instances are solved in parallel, results are written in input order. At most {@code 2 * threads} instances
+ * are in flight at any time, so memory use does not depend on the number of instances.
+ * Output formats (big-endian) depend on the mode:
+ * <ul>
+ * <li>{@code bitmap}: for each instance {@code long u} followed by {@code ceil(u / 8)} bytes,
+ * bit {@code i} (least significant first) is set iff {@code i} is a subset sum less than {@code u},
+ * or just {@code long -1} if the instance is invalid</li>
+ * <li>{@code decision}: one bit per instance (least significant first), set iff {@code target} is a subset sum,
+ * unset for invalid instances</li>
+ * <li>{@code witness}: for each instance {@code int k} followed by {@code k} longs of a subset summing to
+ * {@code target}, {@code -1} if there's no such subset, or {@code -2} if the instance is invalid</li>
+ * </ul>
+ * An instance is invalid if its elements are not distinct or not in {@code [1..u-1]},
+ * or, unless in {@code bitmap} mode, if its target is not in {@code [1..u-1]}, or if the bound of sums to compute
+ * ({@code u} in {@code bitmap} mode, {@code target + 1} otherwise) exceeds {@link #MAX_U}.
+ * Invalid instances and instances whose solver fails (e.g. runs out of memory) do not stop the batch,
+ * they are written as invalid and each one is reported to {@code stderr} with its index and offset in the input file.
+ * Throughput statistics are printed to {@code stderr} at the end.
+ */
+public final class BatchSubsetSumsRunner {
+
+    private static final String USAGE = "usage: BatchSubsetSumsRunner --input <file> --output <file> "
+            + "[--mode bitmap|decision|witness] [--engine auto|dp|optimized-dp|fast-minkowski] [--threads <n>]";
+
+    enum Mode { BITMAP, DECISION, WITNESS }
+
+    enum Engine {
+        AUTO(null),
+        DP(DynamicProgrammingSubsetSummer::new),
+        OPTIMIZED_DP(OptimizedDynamicProgrammingSubsetSummer::new),
+        FAST_MINKOWSKI(FastMinkowskiSubsetSummer::new);
+
+        private final Supplier<SubsetSummer> factory;
+
+        Engine(Supplier<SubsetSummer> factory) {
+            this.factory = factory;
+        }
+    }
+
+    /**
+     * Largest bound of sums every engine can handle: FFT vectors of {@link MinkowskiSumUtils} must stay
+     * below {@code 2^29} elements, and bitmap results must fit a byte array.
+     */
+    static final long MAX_U = (1L << 28) - 1;
+
+    private static final ImmutableList<SubsetSummer> AUTO_CANDIDATES =
+            ImmutableList.of(new OptimizedDynamicProgrammingSubsetSummer(), new FastMinkowskiSubsetSummer());
+
+    static final class Options {
+        Path input;
+        Path output;
+        Mode mode = Mode.BITMAP;
+        Engine engine = Engine.AUTO;
+        int threads = Runtime.getRuntime().availableProcessors();
+
+        static Options parse(String... args) {
+            final Options options = new Options();
+            for (int i = 0; i < args.length; i += 2) {
+                Preconditions.checkArgument(i + 1 < args.length, "missing value of %s\n%s", args[i], USAGE);
+                final String value = args[i + 1];
+                switch (args[i]) {
+                    case "--input":
+                        options.input = Paths.get(value);
+                        break;
+                    case "--output":
+                        options.output = Paths.get(value);
+                        break;
+                    case "--mode":
+                        options.mode = Mode.valueOf(value.toUpperCase(Locale.ROOT));
+                        break;
+                    case "--engine":
+                        options.engine = Engine.valueOf(value.toUpperCase(Locale.ROOT).replace('-', '_'));
+                        break;
+                    case "--threads":
+                        options.threads = Integer.parseInt(value);
+                        break;
+                    default:
+                        throw new IllegalArgumentException("unknown option: " + args[i] + "\n" + USAGE);
+                }
+            }
+            Preconditions.checkArgument(options.input != null && options.output != null, USAGE);
+            Preconditions.checkArgument(options.threads > 0, "threads must be natural, was: %s", options.threads);
+            return options;
+        }
+    }
+
+    static final class Stats {
+        long instances;
+        long invalidInstances;
+        long elements;
+        long inputBytes;
+        long outputBytes;
+        long nanos;
+
+        @Override
+        public String toString() {
+            final double seconds = Math.max(nanos, 1) / 1e9;
+            return String.format(Locale.ROOT,
+                    "%d instances (%d invalid), %d elements in %.3f s: %.1f instances/s, %.1f elements/s, "
+                            + "input %.2f MB/s, output %.2f MB/s",
+                    instances, invalidInstances, elements, seconds, instances / seconds, elements / seconds,
+                    inputBytes / seconds / 1e6, outputBytes / seconds / 1e6);
+        }
+    }
+
+    private BatchSubsetSumsRunner() { }
+
+    public static void main(String[] args) throws Exception {
+        final Options options;
+        try {
+            options = Options.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.exit(2);
+            return;
+        }
+        System.err.println(run(options));
+    }
+
+    static Stats run(Options options) throws IOException, InterruptedException {
+        final Stats stats = new Stats();
+        final Stopwatch timer = Stopwatch.createStarted();
+        final ExecutorService executor = Executors.newFixedThreadPool(options.threads);
+        final Deque<Pending> inFlight = new ArrayDeque<>(2 * options.threads);
+        // FFT thread count is global, it is restored once the batch is done
+        final int fftThreads = ConcurrencyUtils.getNumberOfThreads();
+
+        try (InstanceFileReader reader = new InstanceFileReader(options.input);
+             CountingOutputStream counter = new CountingOutputStream(Files.newOutputStream(options.output));
+             ResultWriter writer = new ResultWriter(new DataOutputStream(new BufferedOutputStream(counter)), options.mode)) {
+            if (options.threads > 1) {
+                // instances are already solved in parallel, don't let FFT spawn threads of its own
+                ConcurrencyUtils.setNumberOfThreads(1);
+            }
+            while (reader.hasNext()) {
+                final InstanceFileReader.Instance instance = reader.next();
+                stats.elements += instance.n;
+                stats.inputBytes += instance.sizeBytes();
+                final Optional<String> error = validate(instance, options.mode);
+                if (error.isPresent()) {
+                    reportInvalid(stats, stats.instances, instance.offset, error.get());
+                    inFlight.add(new Pending(stats.instances, instance.offset,
+                            CompletableFuture.completedFuture(invalidResult(options.mode))));
+                } else {
+                    inFlight.add(new Pending(stats.instances, instance.offset,
+                            executor.submit(() -> solve(instance, options))));
+                }
+                stats.instances++;
+                if (inFlight.size() >= 2 * options.threads) {
+                    writer.write(await(inFlight.poll(), options.mode, stats));
+                }
+            }
+            while (!inFlight.isEmpty()) {
+                writer.write(await(inFlight.poll(), options.mode, stats));
+            }
+            writer.flush();
+            stats.outputBytes = counter.getCount();
+        } finally {
+            executor.shutdownNow();
+            ConcurrencyUtils.setNumberOfThreads(fftThreads);
+        }
+        stats.nanos = timer.elapsed(TimeUnit.NANOSECONDS);
+        return stats;
+    }
+
+    /**
+     * @return the reason why the instance can't be solved in the given mode, if it can't
+     */
+    static Optional<String> validate(InstanceFileReader.Instance instance, Mode mode) {
+        if (instance.hasDuplicates()) {
+            return Optional.of("elements of S must be distinct");
+        }
+        if (instance.u <= 0 || !instance.elements.stream().allMatch(e -> e > 0 && e < instance.u)) {
+            return Optional.of(String.format("all elements in S must be in range: [1..%d]", instance.u - 1));
+        }
+        if (mode != Mode.BITMAP && (instance.target <= 0 || instance.target >= instance.u)) {
+            return Optional.of(String.format("target must be in range: [1..%d], was: %d", instance.u - 1, instance.target));
+        }
+        final long bound = mode == Mode.BITMAP ? instance.u : instance.target + 1;
+        if (bound > MAX_U) {
+            return Optional.of(String.format("bound of sums must not exceed %d, was: %d", MAX_U, bound));
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * @return encoded result of the instance, or the marker of an invalid one if its solver failed
+     */
+    private static byte[] await(Pending pending, Mode mode, Stats stats) throws InterruptedException {
+        try {
+            return pending.result.get();
+        } catch (ExecutionException e) {
+            reportInvalid(stats, pending.index, pending.offset, "failed to solve: " + e.getCause());
+            return invalidResult(mode);
+        }
+    }
+
+    private static void reportInvalid(Stats stats, long index, long offset, String reason) {
+        stats.invalidInstances++;
+        System.err.printf("invalid instance #%d at offset %d: %s%n", index, offset, reason);
+    }
+
+    /**
+     * @return encoded marker of an invalid instance, see class docs for the format
+     */
+    static byte[] invalidResult(Mode mode) {
+        switch (mode) {
+            case BITMAP:
+                return ByteBuffer.allocate(Long.BYTES).putLong(-1).array();
+            case DECISION:
+                return new byte[]{0};
+            case WITNESS:
+                return ByteBuffer.allocate(Integer.BYTES).putInt(-2).array();
+            default:
+                throw new AssertionError(mode);
+        }
+    }
+
+    /**
+     * @param instance valid instance, see {@link #validate}
+     * @return encoded result, see class docs for the format
+     */
+    static byte[] solve(InstanceFileReader.Instance instance, Options options) {
+        switch (options.mode) {
+            case BITMAP: {
+                final SubsetSummer summer = selectEngine(options.engine, instance.elements, instance.u);
+                final ImmutableSet<Long> sums = summer.subsetSums(instance.elements, instance.u);
+                final byte[] result = new byte[Math.toIntExact(Long.BYTES + (instance.u + 7) / 8)];
+                ByteBuffer.wrap(result).putLong(instance.u);
+                for (Long sum : sums) {
+                    result[Long.BYTES + (int) (sum >>> 3)] |= 1 << (sum & 7);
+                }
+                return result;
+            }
+            case DECISION: {
+                final ImmutableSet<Long> candidates = candidatesFor(instance);
+                final SubsetSummer summer = selectEngine(options.engine, candidates, instance.target + 1);
+                final boolean reachable = summer.subsetSums(candidates, instance.target, instance.target + 1)
+                        .contains(instance.target);
+                return new byte[]{(byte) (reachable ? 1 : 0)};
+            }
+            case WITNESS: {
+                final ImmutableSet<Long> candidates = candidatesFor(instance);
+                final SubsetSummer summer = selectEngine(options.engine, candidates, instance.target + 1);
+                final Optional<ImmutableList<Long>> witness =
+                        SubsetSumWitness.find(summer, candidates.asList(), instance.target);
+                final byte[] result = new byte[Integer.BYTES + Long.BYTES * witness.map(ImmutableList::size).orElse(0)];
+                final ByteBuffer buffer = ByteBuffer.wrap(result);
+                buffer.putInt(witness.map(ImmutableList::size).orElse(-1));
+                witness.ifPresent(w -> w.forEach(buffer::putLong));
+                return result;
+            }
+            default:
+                throw new AssertionError(options.mode);
+        }
+    }
+
+    /**
+     * Elements above the target cannot be a part of a subset summing to it.
+     */
+    private static ImmutableSet<Long> candidatesFor(InstanceFileReader.Instance instance) {
+        return ImmutableSet.copyOf(instance.elements.stream().filter(e -> e <= instance.target).iterator());
+    }
+
+    /**
+     * {@link Engine#AUTO} picks the engine with the least estimated running time on the given input.
+     */
+    static SubsetSummer selectEngine(Engine engine, ImmutableSet<Long> S, long u) {
+        if (engine != Engine.AUTO) {
+            return engine.factory.get();
+        }
+        return AUTO_CANDIDATES.stream()
+                .min(Comparator.comparingLong(summer -> summer.estimateCost(S, u).estimatedNanos))
+                .get();
+    }
+
+    /**
+     * Instance being solved, with its position in the input file for error reports.
+     */
+    private static final class Pending {
+        final long index;
+        final long offset;
+        final Future<byte[]> result;
+
+        Pending(long index, long offset, Future<byte[]> result) {
+            this.index = index;
+            this.offset = offset;
+            this.result = result;
+        }
+    }
+
+    /**
+     * Writes encoded results, packing decision bits 8 per byte.
+     */
+    private static final class ResultWriter implements Closeable {
+        private final DataOutputStream out;
+        private final Mode mode;
+        private int pendingBits;
+        private int pendingBitsCount;
+
+        ResultWriter(DataOutputStream out, Mode mode) {
+            this.out = out;
+            this.mode = mode;
+        }
+
+        void write(byte[] encoded) throws IOException {
+            if (mode == Mode.DECISION) {
+                pendingBits |= encoded[0] << pendingBitsCount;
+                if (++pendingBitsCount == 8) {
+                    out.writeByte(pendingBits);
+                    pendingBits = 0;
+                    pendingBitsCount = 0;
+                }
+            } else {
+                out.write(encoded);
+            }
+        }
+
+        void flush() throws IOException {
+            if (pendingBitsCount > 0) {
+                out.writeByte(pendingBits);
+                pendingBits = 0;
+                pendingBitsCount = 0;
+            }
+            out.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.close();
+        }
+    }
+}
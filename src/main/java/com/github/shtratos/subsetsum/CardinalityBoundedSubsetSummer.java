@@ -0,0 +1,367 @@
+package com.github.shtratos.subsetsum;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.ImmutableSortedSet;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Range;
+import com.google.common.primitives.Ints;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static com.github.shtratos.subsetsum.FastMinkowskiSubsetSummer.combine;
+import static com.github.shtratos.subsetsum.FastMinkowskiSubsetSummer.inverseH;
+import static com.github.shtratos.subsetsum.FastMinkowskiSubsetSummer.perfectH;
+import static com.github.shtratos.subsetsum.FastMinkowskiSubsetSummer.perfectHashLength;
+import static com.github.shtratos.subsetsum.FastMinkowskiSubsetSummer.splitIntoIntervals;
+import static com.github.shtratos.subsetsum.MinkowskiSumUtils.layeredMinkowskiSum;
+import static com.github.shtratos.subsetsum.MinkowskiSumUtils.pairwiseLayeredMinkowskiSum;
+import static com.google.common.base.Preconditions.checkState;
+
+/**
+ * Subset Sums restricted to subsets of at most {@code k} elements.
+ * <p>
+ * Uses the same interval split and {@code combine} tree as {@link FastMinkowskiSubsetSummer},
+ * but tracks (sum, cardinality) pairs, see {@link MinkowskiSumUtils#layeredMinkowskiSum}.
+ * Pairs with cardinality above {@code k} are dropped at every merge,
+ * so both dimensions of intermediate results stay bounded by {@code k}.
+ * Since no sum has more than {@code k} summands, {@code k} also bounds the perfect hash of {@code Theorem 2},
+ * which shrinks convolutions of narrow spans of elements well below those of {@link FastMinkowskiSubsetSummer}.
+ * <p>
+ * Each merge still convolves up to {@code 2k + 1} times more than the unbounded one, so for moderate {@code u}
+ * a dynamic programming over one bitset of sums per cardinality is cheaper, taking {@code O(n * k * u / 64)} time.
+ * The method with the least estimated cost is used.
+ */
+public class CardinalityBoundedSubsetSummer implements SubsetSummer {
+
+    private final int k;
+
+    /**
+     * @param k max number of elements in a subset
+     */
+    public CardinalityBoundedSubsetSummer(int k) {
+        Preconditions.checkArgument(k >= 0, "k must be non-negative, was: %s", k);
+        this.k = k;
+    }
+
+    /**
+     * Calculate all sums less than {@code u} of non-empty subsets of at most {@code k} elements.
+     * If no subset of more than {@code k} elements sums below {@code u}, the bound is void
+     * and {@link FastMinkowskiSubsetSummer} is used instead if it is the cheapest.
+     */
+    @Override
+    public ImmutableSet<Long> subsetSums(Set<Long> inputS, long u) {
+        validateInput(inputS, u);
+        final ImmutableSortedSet<Long> S = ImmutableSortedSet.copyOf(inputS);
+        final ImmutableSet<Long> sums;
+        switch (cheapestMethod(estimateMethods(S, u))) {
+            case UNBOUNDED:
+                return new FastMinkowskiSubsetSummer().subsetSums(inputS, u);
+            case LAYERED_DP: {
+                final long[][] layers = layeredDpBits(S, u);
+                final long[] nonEmpty = new long[layers[0].length];
+                for (int c = 1; c < layers.length; c++) {
+                    shiftOr(layers[c], 0, nonEmpty);
+                }
+                sums = bitsToSums(nonEmpty, u);
+                break;
+            }
+            case COMBINE_TREE: {
+                final ImmutableList<ImmutableSet<Long>> layers = combineLayers(S, u);
+                sums = ImmutableSortedSet.copyOf(Iterables.concat(layers.subList(1, layers.size())));
+                break;
+            }
+            default:
+                throw new AssertionError();
+        }
+        validateOutput(sums, u);
+        return sums;
+    }
+
+    /**
+     * Calculate all subset sums less than {@code u}, layered by subset cardinality.
+     *
+     * @return list of at most {@code k + 1} sets, {@code c}th set contains sums of subsets of exactly {@code c} elements
+     */
+    public ImmutableList<ImmutableSet<Long>> subsetSumsByCardinality(Set<Long> inputS, final long u) {
+        validateInput(inputS, u);
+        final ImmutableSortedSet<Long> S = ImmutableSortedSet.copyOf(inputS);
+        if (inputS.isEmpty()) return ImmutableList.of(ImmutableSet.of(0L));
+        final Map<Method, CostEstimate> estimates = estimateMethods(S, u);
+        estimates.remove(Method.UNBOUNDED); // it doesn't tell cardinalities apart
+        return cheapestMethod(estimates) == Method.LAYERED_DP ? layeredDpSums(S, u) : combineLayers(S, u);
+    }
+
+    /**
+     * Merges layered sums of single elements in the {@code combine} tree.
+     */
+    ImmutableList<ImmutableSet<Long>> combineLayers(ImmutableSortedSet<Long> S, final long u) {
+        final List<CardinalitySubsetSums> A = new ArrayList<>();
+        for (ImmutableSortedSet<Long> subset : splitIntoIntervals(S, u)) {
+            final List<CardinalitySubsetSums> B = new ArrayList<>(subset.size());
+            for (Long s_j : subset) {
+                checkState(s_j < u);
+                B.add(CardinalitySubsetSums.ofSingleElement(s_j, k));
+            }
+            A.add(combine(B, (ssA, ssB) -> mergeSubsetSums(ssA, ssB, k, u)));
+        }
+        final CardinalitySubsetSums output = combine(A, (ssA, ssB) -> mergeSubsetSums(ssA, ssB, k, u));
+
+        checkState(output.subsetSize == S.size());
+        checkState(output.sumsByCardinality.size() <= k + 1);
+        return output.sumsByCardinality;
+    }
+
+    /**
+     * Dynamic programming over bitsets of sums of exactly {@code c} elements, {@code c} in {@code [0..k]}:
+     * each element {@code s} adds layer {@code c - 1} shifted by {@code s} to layer {@code c}.
+     * Layers above the max number of summands below {@code u} stay empty, so they are not stored.
+     */
+    ImmutableList<ImmutableSet<Long>> layeredDpSums(ImmutableSortedSet<Long> S, long u) {
+        final ImmutableList.Builder<ImmutableSet<Long>> output = ImmutableList.builder();
+        for (long[] layer : layeredDpBits(S, u)) {
+            output.add(bitsToSums(layer, u));
+        }
+        return output.build();
+    }
+
+    /**
+     * @return {@code c}th bitset has bit {@code i} set iff {@code i} is a sum of exactly {@code c} elements,
+     * bits at {@code u} and above are garbage
+     */
+    private long[][] layeredDpBits(ImmutableSortedSet<Long> S, long u) {
+        final int layers = Math.min(k, maxSummands(S, u)) + 1;
+        final int words = Ints.checkedCast((u + Long.SIZE - 1) / Long.SIZE);
+        final long[][] bits = new long[layers][words];
+        bits[0][0] = 1L;
+        int added = 0;
+        for (Long s : S) {
+            added++;
+            for (int c = Math.min(added, layers - 1); c > 0; c--) {
+                shiftOr(bits[c - 1], s, bits[c]);
+            }
+        }
+        return bits;
+    }
+
+    private static ImmutableSet<Long> bitsToSums(long[] bits, long u) {
+        final ImmutableSet.Builder<Long> sums = ImmutableSet.builder();
+        for (int w = 0; w < bits.length; w++) {
+            for (long word = bits[w]; word != 0; word &= word - 1) {
+                final long sum = (long) w * Long.SIZE + Long.numberOfTrailingZeros(word);
+                if (sum < u) sums.add(sum);
+            }
+        }
+        return sums.build();
+    }
+
+    /**
+     * {@code target |= source << shift}, bits shifted beyond the end of {@code target} are dropped.
+     */
+    private static void shiftOr(long[] source, long shift, long[] target) {
+        if (shift >= (long) target.length * Long.SIZE) return;
+        final int wordShift = (int) (shift / Long.SIZE);
+        final int bitShift = (int) (shift % Long.SIZE);
+        for (int w = target.length - 1; w >= wordShift; w--) {
+            long word = source[w - wordShift] << bitShift;
+            if (bitShift != 0 && w - wordShift > 0) {
+                word |= source[w - wordShift - 1] >>> (Long.SIZE - bitShift);
+            }
+            target[w] |= word;
+        }
+    }
+
+    /**
+     * Estimate of the cheapest method, see class docs.
+     */
+    @Override
+    public CostEstimate estimateCost(Set<Long> inputS, final long u) {
+        validateInput(inputS, u);
+        final Map<Method, CostEstimate> estimates = estimateMethods(ImmutableSortedSet.copyOf(inputS), u);
+        return estimates.get(cheapestMethod(estimates));
+    }
+
+    private enum Method { UNBOUNDED, COMBINE_TREE, LAYERED_DP }
+
+    /**
+     * @return estimates of every method applicable to the given input, input set and output included
+     */
+    private Map<Method, CostEstimate> estimateMethods(ImmutableSortedSet<Long> S, long u) {
+        final Map<Method, CostEstimate> estimates = new EnumMap<>(Method.class);
+        final int maxSummands = maxSummands(S, u);
+        if (k >= maxSummands) {
+            estimates.put(Method.UNBOUNDED, new FastMinkowskiSubsetSummer().estimateCost(S, u));
+        }
+        estimates.put(Method.COMBINE_TREE, estimateCombine(S, u));
+        if (u <= (long) Integer.MAX_VALUE * Long.SIZE) {
+            final long layers = Math.min(k, maxSummands) + 1;
+            final long words = (u + Long.SIZE - 1) / Long.SIZE;
+            final long sums = Math.min(u - 1, S.stream().mapToLong(Long::longValue).sum());
+            final CostModel.Tracker tracker = new CostModel.Tracker();
+            tracker.allocate(CostModel.setBytes(S.size()) + layers * CostModel.arrayBytes(words, Long.BYTES));
+            tracker.spend(CostModel.NANOS_PER_BITSET_WORD * S.size() * (layers - 1) * words);
+            tracker.allocate(CostModel.setBytes(sums));
+            tracker.spend(CostModel.NANOS_PER_SET_ELEMENT * sums);
+            estimates.put(Method.LAYERED_DP, tracker.toEstimate());
+        }
+        return estimates;
+    }
+
+    /**
+     * Ties go to the method declared first.
+     */
+    private static Method cheapestMethod(Map<Method, CostEstimate> estimates) {
+        return Collections.min(estimates.entrySet(),
+                Comparator.comparingLong(e -> e.getValue().estimatedNanos)).getKey();
+    }
+
+    /**
+     * Simulates the {@code combine} tree on {@link SubsetSumsShape}s, assuming every layer may hold every sum.
+     */
+    private CostEstimate estimateCombine(ImmutableSortedSet<Long> S, final long u) {
+        final CostModel.Tracker tracker = new CostModel.Tracker();
+        tracker.allocate(CostModel.setBytes(S.size()));
+        if (S.isEmpty()) return tracker.toEstimate();
+
+        final List<SubsetSumsShape> A = new ArrayList<>();
+        for (ImmutableSortedSet<Long> subset : splitIntoIntervals(S, u)) {
+            final List<SubsetSumsShape> B = new ArrayList<>(subset.size());
+            for (Long s_j : subset) {
+                final SubsetSumsShape leaf = SubsetSumsShape.ofSingleElement(s_j);
+                tracker.allocate(CostModel.setBytes(pairsBound(leaf, k)));
+                B.add(leaf);
+            }
+            A.add(combine(B, (ssA, ssB) -> estimateMerge(ssA, ssB, k, u, tracker)));
+        }
+        combine(A, (ssA, ssB) -> estimateMerge(ssA, ssB, k, u, tracker));
+        return tracker.toEstimate();
+    }
+
+    static SubsetSumsShape estimateMerge(SubsetSumsShape ssA, SubsetSumsShape ssB, int k, long u, CostModel.Tracker tracker) {
+        final SubsetSumsShape merged = ssA.merge(ssB, u);
+        final long maxL = perfectHashLength(merged.subsetSpan, Math.min(merged.subsetSize, k), u);
+        final long a = merged.subsetSpan.lowerEndpoint();
+        final long maxInput = Math.max(ssA.maxSum, ssB.maxSum);
+        final long w = maxCardinality(ssA, k) + maxCardinality(ssB, k) + 1;
+        // a sum of q elements from a+[l-1] has remainder below q * l <= maxL, so its image is bounded
+        final long limit = maxL == 0 ? 2 + 2 * (maxInput * w + w - 1) : 2 + 2 * (2 * maxL * (maxInput / a) + maxL);
+        final long pairsA = pairsBound(ssA, k);
+        final long pairsB = pairsBound(ssB, k);
+
+        tracker.allocate(CostModel.setBytes(pairsBound(merged, k)));
+        if (isPairwiseCheaper(pairsA, pairsB, limit)) {
+            tracker.allocateTemporarily(CostModel.arrayBytes(Math.min(pairsA * pairsB, pairsBound(merged, k)), Long.BYTES));
+            tracker.spend(CostModel.NANOS_PER_SET_ELEMENT * (pairsA * pairsB + pairsBound(merged, k)));
+        } else {
+            tracker.allocateTemporarily(CostModel.setBytes(pairsA) + CostModel.setBytes(pairsB)
+                    + CostModel.setBytes(limit / 2) + CostModel.fftBytes(limit));
+            tracker.spend(convolutionNanos(pairsA, pairsB, limit) + CostModel.NANOS_PER_SET_ELEMENT * pairsBound(merged, k));
+        }
+        tracker.release(CostModel.setBytes(pairsA) + CostModel.setBytes(pairsB));
+        return merged;
+    }
+
+    /**
+     * Cardinality of a subset summing below {@code u} is bounded by {@code k}, by the size of the set
+     * and by the number of its smallest elements fitting in the max sum.
+     */
+    private static long maxCardinality(SubsetSumsShape ss, int k) {
+        return Math.min(Math.min(ss.subsetSize, k), ss.maxSum / ss.subsetSpan.lowerEndpoint());
+    }
+
+    /**
+     * Upper bound of the number of (sum, cardinality) pairs, including the empty subset.
+     * There are no more pairs than subsets of at most {@code k} elements.
+     */
+    private static long pairsBound(SubsetSumsShape ss, int k) {
+        final long maxCardinality = maxCardinality(ss, k);
+        final long layersBound = maxCardinality * ss.sumsBound();
+        long subsets = 0;
+        long binomial = 1;
+        for (long c = 1; c <= maxCardinality && subsets < layersBound; c++) {
+            // C(n, c) = C(n, c - 1) * (n - c + 1) / c, saturated well before it overflows
+            binomial = Math.min(binomial * (ss.subsetSize - c + 1) / c, layersBound);
+            subsets += binomial;
+        }
+        return 1 + Math.min(layersBound, subsets);
+    }
+
+    /**
+     * @return max number of elements of {@code S} in a subset summing below {@code u}
+     */
+    private static int maxSummands(ImmutableSortedSet<Long> S, long u) {
+        int summands = 0;
+        long sum = 0;
+        for (Long s : S) {
+            sum += s;
+            if (sum >= u) break;
+            summands++;
+        }
+        return summands;
+    }
+
+    /**
+     * Merges layers in the cheapest way: adding up pairs of sums while layers are small, otherwise convolution
+     * in the image of the perfect hash of {@code Theorem 2} if {@code k} makes it short enough,
+     * otherwise convolution of layers packed into one dimension.
+     */
+    static CardinalitySubsetSums mergeSubsetSums(CardinalitySubsetSums ssA, CardinalitySubsetSums ssB, int k, long u) {
+        final Range<Long> span = ssA.subsetSpan.span(ssB.subsetSpan);
+        final long n = ssA.subsetSize + ssB.subsetSize;
+        final ImmutableList<ImmutableSet<Long>> A = ssA.sumsByCardinality;
+        final ImmutableList<ImmutableSet<Long>> B = ssB.sumsByCardinality;
+        // both inputs and output hold at most min(n, k, u / a) elements per sum, which bounds the hash
+        final long maxL = perfectHashLength(span, Math.min(n, k), u);
+        final long a = span.lowerEndpoint();
+        final long limit = maxL == 0
+                ? MinkowskiSumUtils.packedLimit(A, B, (A.size() - 1) + (B.size() - 1) + 1)
+                : 2 + 2 * perfectH(Math.max(maxSum(A), maxSum(B)), a, maxL);
+
+        final ImmutableList<ImmutableSet<Long>> layers;
+        if (isPairwiseCheaper(pairs(A), pairs(B), limit)) {
+            layers = pairwiseLayeredMinkowskiSum(A, B, k, u);
+        } else if (maxL == 0) {
+            layers = layeredMinkowskiSum(A, B, k, u);
+        } else {
+            layers = layeredMinkowskiSum(A, B, x -> perfectH(x, a, maxL), x -> inverseH(x, a, maxL), 2 * maxL, k, u);
+        }
+        return new CardinalitySubsetSums(layers, span, n);
+    }
+
+    private static boolean isPairwiseCheaper(long pairsA, long pairsB, long limit) {
+        return CostModel.NANOS_PER_SET_ELEMENT * pairsA * pairsB <= convolutionNanos(pairsA, pairsB, limit);
+    }
+
+    private static double convolutionNanos(long pairsA, long pairsB, long limit) {
+        return CostModel.fftNanos(limit) + CostModel.NANOS_PER_SET_ELEMENT * (pairsA + pairsB + limit / 2);
+    }
+
+    private static long pairs(List<ImmutableSet<Long>> layers) {
+        long pairs = 0;
+        for (ImmutableSet<Long> layer : layers) {
+            pairs += layer.size();
+        }
+        return pairs;
+    }
+
+    /**
+     * Sums of more elements from the same span are larger only in the image of the perfect hash,
+     * so the max is taken over all layers.
+     */
+    private static long maxSum(List<ImmutableSet<Long>> layers) {
+        long max = 0;
+        for (ImmutableSet<Long> layer : layers) {
+            for (Long sum : layer) {
+                max = Math.max(max, sum);
+            }
+        }
+        return max;
+    }
+}
@@ -0,0 +1,38 @@
+package com.github.shtratos.subsetsum;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Range;
+
+/**
+ * Subset sums for some set, layered by the number of elements in a subset.
+ * Contains some metadata about the set.
+ */
+class CardinalitySubsetSums {
+    /**
+     * {@code c}th element is a set of sums of all subsets of exactly {@code c} elements of the current set.
+     * Layer 0 always contains the sum of the empty subset.
+     */
+    final ImmutableList<ImmutableSet<Long>> sumsByCardinality;
+    /**
+     * Range of values in the current set.
+     */
+    final Range<Long> subsetSpan;
+    /**
+     * Size of the current set.
+     */
+    final long subsetSize;
+
+    CardinalitySubsetSums(ImmutableList<ImmutableSet<Long>> sumsByCardinality, Range<Long> subsetSpan, long subsetSize) {
+        this.sumsByCardinality = sumsByCardinality;
+        this.subsetSpan = subsetSpan;
+        this.subsetSize = subsetSize;
+    }
+
+    static CardinalitySubsetSums ofSingleElement(long x, int k) {
+        final ImmutableList<ImmutableSet<Long>> layers = k > 0
+                ? ImmutableList.of(ImmutableSet.of(0L), ImmutableSet.of(x))
+                : ImmutableList.of(ImmutableSet.of(0L));
+        return new CardinalitySubsetSums(layers, Range.closed(x, x), 1);
+    }
+}
@@ -0,0 +1,41 @@
+package com.github.shtratos.subsetsum;
+
+import com.google.common.base.MoreObjects;
+
+/**
+ * Predicted resources required to solve a single instance with some {@link SubsetSummer}.
+ * <p>
+ * Memory figures are upper bounds of the data structures allocated by the algorithm itself
+ * and do not include JVM overhead or garbage that is not yet collected.
+ */
+public final class CostEstimate {
+    /**
+     * Max number of bytes simultaneously live on the heap.
+     */
+    public final long peakHeapBytes;
+    /**
+     * Max number of bytes simultaneously allocated outside the heap.
+     */
+    public final long peakOffHeapBytes;
+    /**
+     * Approximate single-threaded running time in nanoseconds, once the JIT has warmed up.
+     * Unlike memory figures, this is not an upper bound: actual runs may take somewhat longer,
+     * and much longer if they are cold.
+     */
+    public final long estimatedNanos;
+
+    public CostEstimate(long peakHeapBytes, long peakOffHeapBytes, long estimatedNanos) {
+        this.peakHeapBytes = peakHeapBytes;
+        this.peakOffHeapBytes = peakOffHeapBytes;
+        this.estimatedNanos = estimatedNanos;
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("peakHeapBytes", peakHeapBytes)
+                .add("peakOffHeapBytes", peakOffHeapBytes)
+                .add("estimatedNanos", estimatedNanos)
+                .toString();
+    }
+}
@@ -0,0 +1,158 @@
+package com.github.shtratos.subsetsum;
+
+import com.google.common.math.LongMath;
+
+import java.math.RoundingMode;
+
+/**
+ * Memory and time model of the building blocks used by {@link SubsetSummer} implementations.
+ * <p>
+ * Memory sizes assume 64-bit JVM with compressed oops. Time constants are rough single-threaded figures
+ * measured on a commodity x86 machine, they are meant for capacity planning only.
+ */
+final class CostModel {
+    private CostModel() { }
+
+    private static final long ARRAY_HEADER_BYTES = 16;
+    private static final long OBJECT_HEADER_BYTES = 16;
+    /**
+     * Boxed {@code Long} plus its slots in the elements array and hash table of an {@code ImmutableSet}.
+     */
+    static final long BYTES_PER_SET_ELEMENT = 16 + 4 + 8;
+
+    static final double NANOS_PER_SET_ELEMENT = 25;
+    /**
+     * One column of a row scan of {@link OptimizedDynamicProgrammingSubsetSummer},
+     * which reads the state of a random earlier row.
+     */
+    static final double NANOS_PER_DP_CELL = 2;
+    /**
+     * One cell of the boolean table of {@link DynamicProgrammingSubsetSummer}, which reads a boxed element.
+     */
+    static final double NANOS_PER_DP_TABLE_CELL = 2;
+    /**
+     * Allocating and later collecting a row of the boolean table of {@link DynamicProgrammingSubsetSummer}.
+     */
+    static final double NANOS_PER_DP_TABLE_ROW = 200;
+    /**
+     * Adding a pair of counts modulo a prime, one cell of a counting dynamic programming.
+     */
+    static final double NANOS_PER_COUNT_DP_CELL = 1.5;
+    /**
+     * Shifting a word of a bitset of sums and or-ing it into another one.
+     */
+    static final double NANOS_PER_BITSET_WORD = 1;
+    /**
+     * Per complex point per {@code log2} of the transform size, all 3 transforms of a convolution included.
+     */
+    static final double NANOS_PER_FFT_POINT = 4;
+    /**
+     * Per point per {@code log2} of the transform size, all 9 transforms of a modular convolution included.
+     */
+    static final double NANOS_PER_NTT_POINT = 32;
+    /**
+     * Multiplying a pair of counts modulo a prime and accumulating it.
+     */
+    static final double NANOS_PER_COUNT_PRODUCT = 15;
+
+    static long arrayBytes(long length, int elementBytes) {
+        return align(ARRAY_HEADER_BYTES + length * elementBytes);
+    }
+
+    static long setBytes(long size) {
+        return OBJECT_HEADER_BYTES + size * BYTES_PER_SET_ELEMENT;
+    }
+
+    /**
+     * Memory used by {@link MinkowskiSumUtils#convolution}: 2 characteristic vectors and the FFT plan.
+     *
+     * @param limit complex length of the transform
+     */
+    static long fftBytes(long limit) {
+        return 2 * arrayBytes(2 * limit, Float.BYTES) + fftPlanBytes(limit);
+    }
+
+    /**
+     * Mirrors the choice of the plan in {@code FloatFFT_1D}: split-radix for powers of 2,
+     * mixed-radix for sizes factorizable into 2, 3 and 5, Bluestein otherwise.
+     */
+    private static long fftPlanBytes(long limit) {
+        if (LongMath.isPowerOfTwo(limit)) {
+            return arrayBytes(limit + limit / 4, Float.BYTES) + arrayBytes(2 + LongMath.sqrt(limit, RoundingMode.CEILING), Integer.BYTES);
+        } else if (isSmooth(limit)) {
+            return arrayBytes(4 * limit + 15, Float.BYTES) + arrayBytes(2 * limit + 15, Float.BYTES);
+        } else {
+            final long nBluestein = bluesteinSize(limit);
+            // bk1, bk2, twiddle factors and a temporary vector used by each transform
+            return 3 * arrayBytes(2 * nBluestein, Float.BYTES) + arrayBytes(nBluestein + nBluestein / 4, Float.BYTES)
+                    + arrayBytes(2 + LongMath.sqrt(nBluestein, RoundingMode.CEILING), Integer.BYTES);
+        }
+    }
+
+    private static long bluesteinSize(long limit) {
+        return LongMath.checkedPow(2, LongMath.log2(2 * limit - 1, RoundingMode.CEILING));
+    }
+
+    private static boolean isSmooth(long n) {
+        for (long f : new long[]{2, 3, 5}) {
+            while (n % f == 0) {
+                n /= f;
+            }
+        }
+        return n == 1;
+    }
+
+    /**
+     * Bluestein plan costs 3 power of 2 transforms of about 2-4 times the size,
+     * and building the plan takes about as long as one more.
+     */
+    static double fftNanos(long limit) {
+        if (LongMath.isPowerOfTwo(limit) || isSmooth(limit)) {
+            return NANOS_PER_FFT_POINT * limit * Math.max(1, LongMath.log2(limit, RoundingMode.CEILING));
+        } else {
+            final long nBluestein = bluesteinSize(limit);
+            return 4 * NANOS_PER_FFT_POINT * nBluestein * LongMath.log2(nBluestein, RoundingMode.CEILING);
+        }
+    }
+
+    static double nttNanos(long size) {
+        return NANOS_PER_NTT_POINT * size * Math.max(1, LongMath.log2(size, RoundingMode.CEILING));
+    }
+
+    private static long align(long bytes) {
+        return (bytes + 7) & ~7L;
+    }
+
+    /**
+     * Accumulates live memory and time while simulating an algorithm step by step.
+     */
+    static final class Tracker {
+        private long liveBytes;
+        private long peakBytes;
+        private double nanos;
+
+        void allocate(long bytes) {
+            liveBytes += bytes;
+            peakBytes = Math.max(peakBytes, liveBytes);
+        }
+
+        void release(long bytes) {
+            liveBytes -= bytes;
+        }
+
+        /**
+         * Account for memory which is only live during the current step.
+         */
+        void allocateTemporarily(long bytes) {
+            peakBytes = Math.max(peakBytes, liveBytes + bytes);
+        }
+
+        void spend(double nanos) {
+            this.nanos += nanos;
+        }
+
+        CostEstimate toEstimate() {
+            return new CostEstimate(peakBytes, 0L, (long) nanos);
+        }
+    }
+}
@@ -58,6 +58,24 @@ public class DynamicProgrammingSubsetSummer implements SubsetSummer {
         return sums;
     }
 
+    @Override
+    public CostEstimate estimateCost(Set<Long> inputS, long u) {
+        validateInput(inputS, u);
+        final CostModel.Tracker tracker = new CostModel.Tracker();
+        final long n = inputS.size();
+        tracker.allocate(CostModel.setBytes(n));
+        if (inputS.isEmpty()) return tracker.toEstimate();
+
+        // u rows of n booleans each
+        tracker.allocate(CostModel.arrayBytes(u, Integer.BYTES) + u * CostModel.arrayBytes(n, 1));
+        tracker.spend(CostModel.NANOS_PER_DP_TABLE_CELL * u * n + CostModel.NANOS_PER_DP_TABLE_ROW * u);
+
+        final long sums = Math.min(u - 1, inputS.stream().mapToLong(Long::longValue).sum());
+        tracker.allocate(CostModel.setBytes(sums));
+        tracker.spend(CostModel.NANOS_PER_SET_ELEMENT * sums);
+        return tracker.toEstimate();
+    }
+
     private void printState(boolean[][] state) {
         System.out.println("Dumping state:");
         for (int i = 0; i < state.length; i++) {
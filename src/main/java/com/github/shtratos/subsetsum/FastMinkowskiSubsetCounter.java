@@ -0,0 +1,498 @@
+package com.github.shtratos.subsetsum;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableSortedSet;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Range;
+import com.google.common.math.LongMath;
+import com.google.common.primitives.Ints;
+import com.google.common.primitives.Longs;
+
+import java.math.BigInteger;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BinaryOperator;
+import java.util.function.LongUnaryOperator;
+
+import static com.github.shtratos.subsetsum.FastMinkowskiSubsetSummer.combine;
+import static com.github.shtratos.subsetsum.FastMinkowskiSubsetSummer.inverseH;
+import static com.github.shtratos.subsetsum.FastMinkowskiSubsetSummer.perfectHashLength;
+import static com.github.shtratos.subsetsum.FastMinkowskiSubsetSummer.perfectH;
+import static com.github.shtratos.subsetsum.FastMinkowskiSubsetSummer.splitIntoIntervals;
+import static com.google.common.base.Preconditions.checkState;
+
+/**
+ * Counts subsets reaching each sum, modulo a prime.
+ * <p>
+ * Uses the same interval split and {@code combine} tree as {@link FastMinkowskiSubsetSummer},
+ * but subset sums are represented by sparse count vectors (see {@link SubsetSumCounts}).
+ * Each merge picks the cheapest way according to {@link CostModel}:
+ * <ul>
+ * <li>multiply all pairs of non-zero counts, while supports are small</li>
+ * <li>add elements of the smaller set one by one to dense counts of the other one,
+ * the same way dynamic programming does, while the smaller set has few elements</li>
+ * <li>exact modular convolution of dense counts (see {@link ModularConvolutionUtils})</li>
+ * </ul>
+ * Dense counts are range-compressed with the same perfect hash as in {@code Theorem 2}:
+ * it is additive and injective on the sums it maps, so counts carry over.
+ * <p>
+ * The tree pays off on sparse inputs and on clustered ones, whose hashed count vectors are short.
+ * Dense inputs are counted as coefficients of {@code exp(sum(log(1 + x^s)))} instead, which takes
+ * {@code O(u * log^2(u))} time regardless of {@code n}, as long as {@code u <= p} and
+ * {@code u <= 2^23}, the longest transform of {@link ModularConvolutionUtils}.
+ * Classic {@code O(n * u)} dynamic programming is used if it is estimated to be faster than both.
+ */
+public class FastMinkowskiSubsetCounter {
+
+    public static final long DEFAULT_MODULUS = 1_000_000_007L;
+
+    // below this length online convolution multiplies pairs directly
+    private static final int ONLINE_THRESHOLD = 64;
+
+    private final long p;
+
+    public FastMinkowskiSubsetCounter() {
+        this(DEFAULT_MODULUS);
+    }
+
+    /**
+     * @param p prime modulus in range {@code [2..2^31-1]}
+     */
+    public FastMinkowskiSubsetCounter(long p) {
+        Preconditions.checkArgument(p > 1 && p <= ModularConvolutionUtils.MAX_MODULUS,
+                "modulus must be in range: [2..%s], was: %s", ModularConvolutionUtils.MAX_MODULUS, p);
+        Preconditions.checkArgument(BigInteger.valueOf(p).isProbablePrime(64), "modulus must be prime, was: %s", p);
+        this.p = p;
+    }
+
+    /**
+     * Given a positive integer {@code u} and a set of {@code n} integers {@code S} in the range {@code [1..u-1]},
+     * count subsets of {@code S} summing to each value less than {@code u}.
+     *
+     * @return array of length {@code u}, where {@code i}th element is the number of subsets summing to {@code i},
+     * modulo {@code p}. Element 0 accounts for the empty subset.
+     */
+    public long[] subsetSumCounts(Set<Long> inputS, final long u) {
+        SubsetSummer.checkInput(inputS, u);
+        final ImmutableSortedSet<Long> S = ImmutableSortedSet.copyOf(inputS);
+        switch (cheapestMethod(estimateMethods(S, u))) {
+            case COMBINE_TREE:
+                return combineCounts(S, u);
+            case EXPONENTIAL:
+                return exponentialCounts(S, u);
+            case DYNAMIC_PROGRAMMING: {
+                final long[] output = new long[Ints.checkedCast(u)];
+                output[0] = 1;
+                addElements(output, Longs.toArray(S), LongUnaryOperator.identity());
+                return output;
+            }
+            default:
+                throw new AssertionError();
+        }
+    }
+
+    /**
+     * Same as {@link #subsetSumCounts(Set, long)}, but always uses the {@code combine} tree.
+     *
+     * @param S non-empty sorted input set, all elements are in {@code [1..u-1]}
+     */
+    long[] combineCounts(ImmutableSortedSet<Long> S, final long u) {
+        final BinaryOperator<SubsetSumCounts> merge = (cA, cB) -> mergeCounts(cA, cB, u);
+        final List<SubsetSumCounts> A = new ArrayList<>();
+        for (ImmutableSortedSet<Long> subset : splitIntoIntervals(S, u)) {
+            // leaves are only built when the first level of the tree merges them
+            A.add(combine(Lists.transform(subset.asList(), SubsetSumCounts::ofSingleElement), merge));
+        }
+        final SubsetSumCounts counts = combine(A, merge);
+
+        checkState(counts.elements.length == S.size());
+        final long[] output = new long[Ints.checkedCast(u)];
+        for (int i = 0; i < counts.size(); i++) {
+            output[(int) counts.sums[i]] = counts.counts[i];
+        }
+        return output;
+    }
+
+    /**
+     * Same as {@link #subsetSumCounts(Set, long)}, but counts are coefficients of
+     * {@code prod(1 + x^s) = exp(sum(log(1 + x^s)))}. The logarithm is a sum of {@code u / s} terms per element,
+     * the exponent is found by online convolution.
+     *
+     * @param S sorted input set, all elements are in {@code [1..u-1]}, {@code u} must not exceed {@code p}
+     *          so that every index below {@code u} is invertible, nor the longest transform of
+     *          {@link ModularConvolutionUtils}
+     */
+    long[] exponentialCounts(ImmutableSortedSet<Long> S, final long u) {
+        Preconditions.checkArgument(u <= p, "u must not exceed modulus %s, was: %s", p, u);
+        Preconditions.checkArgument(u <= ModularConvolutionUtils.MAX_LENGTH,
+                "u must not exceed %s, was: %s", ModularConvolutionUtils.MAX_LENGTH, u);
+        final int length = Ints.checkedCast(u);
+        // h = x * log(prod(1 + x^s))', so h[k] is a sum of (-1)^(k/s+1) * s over elements s dividing k
+        final long[] h = new long[length];
+        for (long s : S) {
+            boolean odd = true;
+            for (long k = s; k < u; k += s, odd = !odd) {
+                final long c = h[(int) k] + (odd ? s : p - s) - p;
+                h[(int) k] = c + (c >> 63 & p);
+            }
+        }
+        final long[] inverse = new long[length];
+        if (length > 1) inverse[1] = 1;
+        for (int i = 2; i < length; i++) {
+            inverse[i] = (p - p / i) * inverse[(int) (p % i)] % p;
+        }
+        final long[] output = new long[length];
+        onlineExponent(output, h, new long[length], inverse, 0, length);
+        return output;
+    }
+
+    /**
+     * Finds {@code f[l..r-1]} of {@code f = exp(g)} given {@code h[k] = k * g[k]},
+     * from {@code i * f[i] = sum(h[k] * f[i - k])} over {@code k} in {@code [1..i]}.
+     * Contributions of {@code f[0..l-1]} to {@code partial} must be already added.
+     * Left half contributes to the right one with a single cyclic convolution, so there are {@code O(log(r - l))}
+     * levels of convolutions of total length {@code O(r - l)} each.
+     */
+    private void onlineExponent(long[] f, long[] h, long[] partial, long[] inverse, int l, int r) {
+        if (r - l <= ONLINE_THRESHOLD) {
+            for (int i = l; i < r; i++) {
+                f[i] = i == 0 ? 1 : partial[i] * inverse[i] % p;
+                for (int j = i + 1; j < r; j++) {
+                    partial[j] = (partial[j] + f[i] * h[j - i]) % p;
+                }
+            }
+            return;
+        }
+        final int m = (l + r) >>> 1;
+        onlineExponent(f, h, partial, inverse, l, m);
+        // products of the left half and h[0..r-l-1] wrapping around the transform land below m - l
+        final long[] c = ModularConvolutionUtils.cyclicConvolution(
+                Arrays.copyOfRange(f, l, m), Arrays.copyOf(h, r - l), transformSize(r - l), p);
+        for (int j = m; j < r; j++) {
+            final long s = partial[j] + c[j - l] - p;
+            partial[j] = s + (s >> 63 & p);
+        }
+        onlineExponent(f, h, partial, inverse, m, r);
+    }
+
+    /**
+     * Estimate peak memory and running time of {@link #subsetSumCounts(Set, long)} on the given input without solving it.
+     * Simulates the {@code combine} tree on {@link SubsetSumsShape}s, taking bounds of supports for their sizes,
+     * unless another method is estimated to be faster.
+     */
+    public CostEstimate estimateCost(Set<Long> inputS, final long u) {
+        SubsetSummer.checkInput(inputS, u);
+        final Map<Method, CostEstimate> estimates = estimateMethods(ImmutableSortedSet.copyOf(inputS), u);
+        return estimates.get(cheapestMethod(estimates));
+    }
+
+    private enum Method { DYNAMIC_PROGRAMMING, COMBINE_TREE, EXPONENTIAL }
+
+    /**
+     * @return estimates of every method applicable to the given input, input set and output array included
+     */
+    private Map<Method, CostEstimate> estimateMethods(ImmutableSortedSet<Long> S, long u) {
+        final Map<Method, CostEstimate> estimates = new EnumMap<>(Method.class);
+        final CostModel.Tracker dpTracker = new CostModel.Tracker();
+        dpTracker.allocate(CostModel.setBytes(S.size()) + CostModel.arrayBytes(u, Long.BYTES));
+        dpTracker.spend(CostModel.NANOS_PER_COUNT_DP_CELL * S.size() * u);
+        estimates.put(Method.DYNAMIC_PROGRAMMING, dpTracker.toEstimate());
+        if (!S.isEmpty()) {
+            estimates.put(Method.COMBINE_TREE, estimateCombine(S, u));
+        }
+        // the first online convolution has a transform of the length of the whole range
+        if (u <= p && transformSize(u) <= ModularConvolutionUtils.MAX_LENGTH) {
+            estimates.put(Method.EXPONENTIAL, estimateExponential(S, u));
+        }
+        return estimates;
+    }
+
+    /**
+     * Dynamic programming wins ties, it has the most predictable running time.
+     */
+    private static Method cheapestMethod(Map<Method, CostEstimate> estimates) {
+        return Collections.min(estimates.entrySet(),
+                Comparator.comparingLong(e -> e.getValue().estimatedNanos)).getKey();
+    }
+
+    /**
+     * Simulates the {@code combine} tree on {@link SubsetSumsShape}s.
+     */
+    private static CostEstimate estimateCombine(ImmutableSortedSet<Long> S, long u) {
+        final CostModel.Tracker tracker = new CostModel.Tracker();
+        tracker.allocate(CostModel.setBytes(S.size()) + CostModel.arrayBytes(u, Long.BYTES));
+        final BinaryOperator<SubsetSumsShape> merge = (ssA, ssB) -> estimateMerge(ssA, ssB, u, tracker);
+        final List<SubsetSumsShape> A = new ArrayList<>();
+        for (ImmutableSortedSet<Long> subset : splitIntoIntervals(S, u)) {
+            final List<SubsetSumsShape> B = new ArrayList<>(subset.size());
+            for (Long s_j : subset) {
+                B.add(SubsetSumsShape.ofSingleElement(s_j));
+            }
+            A.add(combine(B, merge));
+        }
+        combine(A, merge);
+        return tracker.toEstimate();
+    }
+
+    /**
+     * Mirrors {@link #exponentialCounts(ImmutableSortedSet, long)}.
+     */
+    private static CostEstimate estimateExponential(ImmutableSortedSet<Long> S, long u) {
+        final CostModel.Tracker tracker = new CostModel.Tracker();
+        // input set, h, inverses, partial sums and the output
+        tracker.allocate(CostModel.setBytes(S.size()) + 4 * CostModel.arrayBytes(u, Long.BYTES));
+        long multiples = 0;
+        for (long s : S) {
+            multiples += (u - 1) / s;
+        }
+        tracker.spend(CostModel.NANOS_PER_COUNT_DP_CELL * (multiples + u));
+        if (u > ONLINE_THRESHOLD) {
+            // the largest convolution: copies of halves, transformed vectors and results for 3 primes
+            final long transformSize = transformSize(u);
+            tracker.allocateTemporarily(2 * CostModel.arrayBytes(u, Long.BYTES)
+                    + 2 * CostModel.arrayBytes(transformSize, Integer.BYTES) + 4 * CostModel.arrayBytes(transformSize, Long.BYTES));
+        }
+        tracker.spend(onlineExponentNanos(u));
+        return tracker.toEstimate();
+    }
+
+    /**
+     * Mirrors {@link #onlineExponent} on a range of the given length.
+     */
+    private static double onlineExponentNanos(long length) {
+        if (length <= ONLINE_THRESHOLD) {
+            return CostModel.NANOS_PER_COUNT_PRODUCT * length * (length - 1) / 2;
+        }
+        final long half = length / 2;
+        return onlineExponentNanos(half) + onlineExponentNanos(length - half) + CostModel.nttNanos(transformSize(length));
+    }
+
+    private static int transformSize(long length) {
+        return Ints.checkedCast(LongMath.checkedPow(2, LongMath.log2(length, RoundingMode.CEILING)));
+    }
+
+    /**
+     * Transform size of {@link ModularConvolutionUtils#convolution} of dense vectors of the given lengths.
+     */
+    private static long convolutionTransformSize(long lengthA, long lengthB) {
+        return LongMath.checkedPow(2, LongMath.log2(lengthA + lengthB - 1, RoundingMode.CEILING));
+    }
+
+    /**
+     * Counts of subset sums of concatenation of 2 sets, given counts of both.
+     */
+    private SubsetSumCounts mergeCounts(SubsetSumCounts cA, SubsetSumCounts cB, final long u) {
+        final Range<Long> span = cA.subsetSpan.span(cB.subsetSpan);
+        final long[] elements = Longs.concat(cA.elements, cB.elements);
+        final long maxL = perfectHashLength(span, elements.length, u);
+        final long a = span.lowerEndpoint();
+        final LongUnaryOperator h = maxL == 0 ? LongUnaryOperator.identity() : x -> perfectH(x, a, maxL);
+        final LongUnaryOperator inverseH = maxL == 0 ? LongUnaryOperator.identity() : x -> inverseH(x, a, maxL);
+        final long hMaxA = h.applyAsLong(cA.maxSum());
+        final long hMaxB = h.applyAsLong(cB.maxSum());
+        final long fullLength = hMaxA + hMaxB + 1;
+        // the image of sums below u is a prefix only if there is no hashing
+        final int length = Ints.checkedCast(maxL == 0 ? Math.min(u, fullLength) : fullLength);
+        final int lengthA = (int) Math.min(length, hMaxA + 1);
+        final int lengthB = (int) Math.min(length, hMaxB + 1);
+        // elements of the smaller set are added to counts of the larger one
+        final SubsetSumCounts larger = cA.elements.length >= cB.elements.length ? cA : cB;
+        final SubsetSumCounts smaller = larger == cA ? cB : cA;
+
+        switch (cheapestMerge(cA.size(), cB.size(), smaller.elements.length, length, lengthA, lengthB)) {
+            case PAIRWISE:
+                return pairwiseProduct(cA, cB, span, elements, u);
+            case ADD_ELEMENTS: {
+                final long[] dense = toDense(larger, h, length);
+                addElements(dense, smaller.elements, h);
+                return fromDense(dense, inverseH, u, span, elements);
+            }
+            case CONVOLUTION: {
+                final long[] dense = ModularConvolutionUtils.convolution(
+                        toDense(cA, h, lengthA), toDense(cB, h, lengthB), length, p);
+                return fromDense(dense, inverseH, u, span, elements);
+            }
+            default:
+                throw new AssertionError();
+        }
+    }
+
+    /**
+     * Multiplies all pairs of non-zero counts. Products are accumulated in a dense vector if the range of sums
+     * is not much larger than the number of pairs, otherwise they are sorted by sum.
+     */
+    private SubsetSumCounts pairwiseProduct(SubsetSumCounts cA, SubsetSumCounts cB,
+                                            Range<Long> span, long[] elements, long u) {
+        final int range = Ints.checkedCast(Math.min(u - 1, cA.maxSum() + cB.maxSum()) + 1);
+        final long pairs = (long) cA.size() * cB.size();
+        if (range <= 2 * pairs) {
+            final long[] dense = new long[range];
+            for (int i = 0; i < cA.size(); i++) {
+                for (int j = 0; j < cB.size(); j++) {
+                    final long sum = cA.sums[i] + cB.sums[j];
+                    if (sum >= range) break; // sums are sorted
+                    final long c = dense[(int) sum] + cA.counts[i] * cB.counts[j] % p - p;
+                    dense[(int) sum] = c + (c >> 63 & p);
+                }
+            }
+            return fromDense(dense, LongUnaryOperator.identity(), u, span, elements);
+        }
+
+        // sums are below 2^31 and counts are below p <= 2^31, so a pair fits into a single long
+        final long[] packed = new long[Ints.checkedCast(pairs)];
+        int m = 0;
+        for (int i = 0; i < cA.size(); i++) {
+            for (int j = 0; j < cB.size(); j++) {
+                final long sum = cA.sums[i] + cB.sums[j];
+                if (sum >= u) break; // sums are sorted
+                packed[m++] = sum << 32 | cA.counts[i] * cB.counts[j] % p;
+            }
+        }
+        Arrays.sort(packed, 0, m);
+        final long[] sums = new long[m];
+        final long[] counts = new long[m];
+        int size = 0;
+        for (int i = 0; i < m; ) {
+            final long sum = packed[i] >>> 32;
+            long count = 0;
+            for (; i < m && packed[i] >>> 32 == sum; i++) {
+                count += packed[i] & 0xFFFF_FFFFL;
+                count = count < p ? count : count - p;
+            }
+            if (count != 0) {
+                sums[size] = sum;
+                counts[size] = count;
+                size++;
+            }
+        }
+        return new SubsetSumCounts(Arrays.copyOf(sums, size), Arrays.copyOf(counts, size), span, elements);
+    }
+
+    /**
+     * Adds elements to the set represented by dense counts in the image of {@code h}, one by one.
+     */
+    private void addElements(long[] dense, long[] elements, LongUnaryOperator h) {
+        for (long e : elements) {
+            final int he = (int) h.applyAsLong(e);
+            for (int i = dense.length - 1; i >= he; i--) {
+                // branchless reduction, counts are too random for the branch to be predicted
+                final long c = dense[i] + dense[i - he] - p;
+                dense[i] = c + (c >> 63 & p);
+            }
+        }
+    }
+
+    /**
+     * @return counts in the image of {@code h}, truncated or padded to {@code length}
+     */
+    private static long[] toDense(SubsetSumCounts c, LongUnaryOperator h, int length) {
+        final long[] dense = new long[length];
+        for (int i = 0; i < c.size(); i++) {
+            final long hs = h.applyAsLong(c.sums[i]);
+            if (hs >= length) break; // h is monotone on sums
+            dense[(int) hs] = c.counts[i];
+        }
+        return dense;
+    }
+
+    /**
+     * Non-zero counts of sums below {@code u}, given counts of their images under {@code h}.
+     * Perfect hash is monotone on the sums it maps, so the sums stay sorted.
+     */
+    private static SubsetSumCounts fromDense(long[] dense, LongUnaryOperator inverseH, long u,
+                                             Range<Long> span, long[] elements) {
+        int size = 0;
+        for (long c : dense) {
+            if (c != 0) size++;
+        }
+        final long[] sums = new long[size];
+        final long[] counts = new long[size];
+        size = 0;
+        for (int i = 0; i < dense.length; i++) {
+            if (dense[i] == 0) continue;
+            final long sum = inverseH.applyAsLong(i);
+            if (sum < u) {
+                sums[size] = sum;
+                counts[size] = dense[i];
+                size++;
+            }
+        }
+        return size == sums.length
+                ? new SubsetSumCounts(sums, counts, span, elements)
+                : new SubsetSumCounts(Arrays.copyOf(sums, size), Arrays.copyOf(counts, size), span, elements);
+    }
+
+    /**
+     * Mirrors {@link #mergeCounts(SubsetSumCounts, SubsetSumCounts, long)} on bounds of supports.
+     */
+    private static SubsetSumsShape estimateMerge(SubsetSumsShape ssA, SubsetSumsShape ssB, long u, CostModel.Tracker tracker) {
+        final SubsetSumsShape merged = ssA.merge(ssB, u);
+        final long maxL = perfectHashLength(merged.subsetSpan, merged.subsetSize, u);
+        final long a = merged.subsetSpan.lowerEndpoint();
+        final long hMaxA = maxL == 0 ? ssA.maxSum : perfectH(ssA.maxSum, a, maxL);
+        final long hMaxB = maxL == 0 ? ssB.maxSum : perfectH(ssB.maxSum, a, maxL);
+        final long length = maxL == 0 ? Math.min(u, hMaxA + hMaxB + 1) : hMaxA + hMaxB + 1;
+        final long lengthA = Math.min(length, hMaxA + 1);
+        final long lengthB = Math.min(length, hMaxB + 1);
+        // the empty sum is kept in count vectors
+        final long sizeA = ssA.sumsBound() + 1;
+        final long sizeB = ssB.sumsBound() + 1;
+        final long size = merged.sumsBound() + 1;
+        final long smallerElements = Math.min(ssA.subsetSize, ssB.subsetSize);
+
+        tracker.allocate(2 * CostModel.arrayBytes(size, Long.BYTES) + CostModel.arrayBytes(merged.subsetSize, Long.BYTES));
+        switch (cheapestMerge(sizeA, sizeB, smallerElements, length, lengthA, lengthB)) {
+            case PAIRWISE:
+                tracker.allocateTemporarily(CostModel.arrayBytes(Math.min(sizeA * sizeB, merged.maxSum + 1), Long.BYTES));
+                tracker.spend(CostModel.NANOS_PER_COUNT_PRODUCT * sizeA * sizeB);
+                break;
+            case ADD_ELEMENTS:
+                tracker.allocateTemporarily(CostModel.arrayBytes(length, Long.BYTES));
+                tracker.spend(CostModel.NANOS_PER_COUNT_DP_CELL * smallerElements * length);
+                break;
+            case CONVOLUTION:
+                final long transformSize = convolutionTransformSize(lengthA, lengthB);
+                // dense inputs, transformed vectors and results for 3 primes
+                tracker.allocateTemporarily(CostModel.arrayBytes(lengthA, Long.BYTES) + CostModel.arrayBytes(lengthB, Long.BYTES)
+                        + 2 * CostModel.arrayBytes(transformSize, Integer.BYTES) + 4 * CostModel.arrayBytes(length, Long.BYTES));
+                tracker.spend(CostModel.nttNanos(transformSize));
+                break;
+            default:
+                throw new AssertionError();
+        }
+        tracker.release(2 * CostModel.arrayBytes(sizeA, Long.BYTES) + 2 * CostModel.arrayBytes(sizeB, Long.BYTES)
+                + CostModel.arrayBytes(ssA.subsetSize, Long.BYTES) + CostModel.arrayBytes(ssB.subsetSize, Long.BYTES));
+        return merged;
+    }
+
+    enum Merge { PAIRWISE, ADD_ELEMENTS, CONVOLUTION }
+
+    /**
+     * @param sizeA           number of non-zero counts of the first set
+     * @param sizeB           number of non-zero counts of the second set
+     * @param smallerElements number of elements of the smaller set
+     * @param length          length of dense counts of the result
+     * @param lengthA         length of dense counts of the first set, up to its largest hashed sum
+     * @param lengthB         length of dense counts of the second set, up to its largest hashed sum
+     */
+    static Merge cheapestMerge(long sizeA, long sizeB, long smallerElements,
+                                       long length, long lengthA, long lengthB) {
+        final double pairwise = CostModel.NANOS_PER_COUNT_PRODUCT * sizeA * sizeB;
+        final double addElements = CostModel.NANOS_PER_COUNT_DP_CELL * smallerElements * length;
+        final long transformSize = convolutionTransformSize(lengthA, lengthB);
+        // transforms beyond the limit of ModularConvolutionUtils are not an option
+        final double convolution = transformSize <= ModularConvolutionUtils.MAX_LENGTH
+                ? CostModel.nttNanos(transformSize) : Double.POSITIVE_INFINITY;
+        if (pairwise <= addElements && pairwise <= convolution) {
+            return Merge.PAIRWISE;
+        }
+        return addElements <= convolution ? Merge.ADD_ELEMENTS : Merge.CONVOLUTION;
+    }
+}
@@ -4,7 +4,6 @@ import com.google.common.base.Preconditions;
 import com.google.common.collect.FluentIterable;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.ImmutableSortedSet;
-import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Range;
 import com.google.common.math.DoubleMath;
@@ -14,6 +13,8 @@ import java.math.RoundingMode;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Set;
+import java.util.function.BinaryOperator;
+import java.util.function.LongUnaryOperator;
 
 import static com.github.shtratos.subsetsum.MinkowskiSumUtils.minkowskiSum;
 import static com.google.common.base.Preconditions.checkState;
@@ -28,13 +29,84 @@ public class FastMinkowskiSubsetSummer implements SubsetSummer {
 
     @Override
     public ImmutableSet<Long> subsetSums(Set<Long> inputS, final long u) {
+        return subsetSums(inputS, 1L, u);
+    }
+
+    /**
+     * Only the final merge of the {@code combine} tree is restricted to the window,
+     * since all lower sums are required to build it.
+     */
+    @Override
+    public ImmutableSet<Long> subsetSums(Set<Long> inputS, final long lo, final long u) {
         validateInput(inputS, u);
+        validateWindow(lo, u);
         final ImmutableSortedSet<Long> S = ImmutableSortedSet.copyOf(inputS);
         if (inputS.isEmpty()) return ImmutableSet.of();
 
         final long n = S.size(); // #1, here and further #i denotes corresponding line in the algorithm pseudo-code in the paper
+        final BinaryOperator<SubsetSums> merge = (ssA, ssB) -> mergeSubsetSums(ssA, ssB, u);
+        final BinaryOperator<SubsetSums> rootMerge = lo > 1 ? (ssA, ssB) -> mergeSubsetSums(ssA, ssB, lo, u) : merge;
+
+        // independently calculate subset sums on each interval of known size
+        // (I think this can be done in parallel)
+        final List<ImmutableSortedSet<Long>> intervals = splitIntoIntervals(S, u);
+        List<SubsetSums> A = new ArrayList<>(intervals.size());
+        for (ImmutableSortedSet<Long> subset : intervals) { // #7
+            final List<SubsetSums> B = new ArrayList<>(subset.size());
+            for (Long s_j : subset) { // #9
+                checkState(s_j < u);
+                B.add(SubsetSums.ofSingleElement(s_j)); // #10
+            }
+            // with a single interval its own tree is the final one
+            A.add(combine(B, merge, intervals.size() == 1 ? rootMerge : merge)); // #11
+        }
+
+        // merge results from all intervals
+        final SubsetSums output = combine(A, merge, rootMerge); // #12
+
+        validateOutput(output.sums, u);
+        checkState(Range.closed(0L, u - 1).encloses(output.subsetSpan));
+        checkState(output.subsetSize == n);
+        // otherwise the root merge has already applied the window
+        return lo > 1 && n == 1 ? FluentIterable.from(output.sums).filter(e -> e >= lo).toSet() : output.sums;
+    }
+
+    /**
+     * Simulates the interval split and the {@code combine} tree on {@link SubsetSumsShape}s,
+     * estimating the size of every convolution without doing it.
+     */
+    @Override
+    public CostEstimate estimateCost(Set<Long> inputS, final long u) {
+        validateInput(inputS, u);
+        final ImmutableSortedSet<Long> S = ImmutableSortedSet.copyOf(inputS);
+        final CostModel.Tracker tracker = new CostModel.Tracker();
+        tracker.allocate(CostModel.setBytes(S.size()));
+        if (inputS.isEmpty()) return tracker.toEstimate();
+
+        final BinaryOperator<SubsetSumsShape> merge = (ssA, ssB) -> estimateMerge(ssA, ssB, u, tracker);
+        final List<SubsetSumsShape> A = new ArrayList<>();
+        for (ImmutableSortedSet<Long> subset : splitIntoIntervals(S, u)) {
+            final List<SubsetSumsShape> B = new ArrayList<>(subset.size());
+            for (Long s_j : subset) {
+                tracker.allocate(CostModel.setBytes(1));
+                B.add(SubsetSumsShape.ofSingleElement(s_j));
+            }
+            A.add(combine(B, merge));
+        }
+        combine(A, merge);
+        return tracker.toEstimate();
+    }
 
-        // split S in k + 2 intervals to get predictable running times
+    /**
+     * Split S in k + 2 intervals to get predictable running times.
+     * Empty intervals are skipped.
+     *
+     * @param S sorted input set, all elements are in {@code [1..u-1]}
+     * @param u target bound
+     * @return non-empty subsets of S, one per interval
+     */
+    static List<ImmutableSortedSet<Long>> splitIntoIntervals(ImmutableSortedSet<Long> S, long u) {
+        final long n = S.size();
         final int k = log2(Math.max(log2(n), 1)); // #3
         final List<Long> a = new ArrayList<>(k + 2);
         a.add(0L); // #2
@@ -47,28 +119,13 @@ public class FastMinkowskiSubsetSummer implements SubsetSummer {
         }
         a.add(u); // #6
 
-        // independently calculate subset sums on each interval of known size
-        // (I think this can be done in parallel)
-        List<SubsetSums> A = new ArrayList<>(k + 2);
+        final List<ImmutableSortedSet<Long>> intervals = new ArrayList<>(k + 1);
         for (int i = 0; i <= k; i++) { // #7
             final ImmutableSortedSet<Long> subset = S.subSet(a.get(i), a.get(i + 1)); // #8
-            final int t = subset.size();
-            if (t == 0) continue; // skip the interval if it's empty
-            final List<SubsetSums> B = new ArrayList<>(t);
-            for (Long s_j : subset) { // #9
-                checkState(s_j < u);
-                B.add(SubsetSums.ofSingleElement(s_j)); // #10
-            }
-            A.add(combine(B, u)); // #11
+            if (subset.isEmpty()) continue; // skip the interval if it's empty
+            intervals.add(subset);
         }
-
-        // merge results from all intervals
-        final SubsetSums output = combine(A, u); // #12
-
-        validateOutput(output.sums, u);
-        checkState(Range.closed(0L, u - 1).encloses(output.subsetSpan));
-        checkState(output.subsetSize == n);
-        return output.sums;
+        return intervals;
     }
 
     private static long pow2(int k) {
@@ -86,19 +143,37 @@ public class FastMinkowskiSubsetSummer implements SubsetSummer {
      * All elements of Si fit in the {@code span} range, which is a subset of {@code [0..u-1]}
      */
     static SubsetSums combine(final List<SubsetSums> sets, final long u) {
-        if (sets.size() <= 1) {
+        return combine(sets, (ssA, ssB) -> mergeSubsetSums(ssA, ssB, u));
+    }
+
+    /**
+     * Same as {@link #combine(List, long)}, but works on any representation of subset sums
+     * given the way to merge two adjacent ones.
+     */
+    static <T> T combine(final List<T> sets, final BinaryOperator<T> merge) {
+        return combine(sets, merge, merge);
+    }
+
+    /**
+     * Same as {@link #combine(List, BinaryOperator)}, but the last merge at the root of the tree
+     * is done with {@code rootMerge}.
+     */
+    static <T> T combine(final List<T> sets, final BinaryOperator<T> merge, final BinaryOperator<T> rootMerge) {
+        if (sets.size() == 2) {
+            return rootMerge.apply(sets.get(0), sets.get(1));
+        } else if (sets.size() <= 1) {
             Preconditions.checkArgument(!sets.isEmpty(), "sets must have at least one element!");
             return sets.get(0);
         } else {
-            final List<SubsetSums> combinedSets = new ArrayList<>(sets.size() / 2 + 1);
-            for (List<SubsetSums> pairOfSets : Lists.partition(sets, 2)) {
+            final List<T> combinedSets = new ArrayList<>(sets.size() / 2 + 1);
+            for (List<T> pairOfSets : Lists.partition(sets, 2)) {
                 if (pairOfSets.size() == 2) {
-                    combinedSets.add(mergeSubsetSums(pairOfSets.get(0), pairOfSets.get(1), u));
+                    combinedSets.add(merge.apply(pairOfSets.get(0), pairOfSets.get(1)));
                 } else {
                     combinedSets.add(pairOfSets.get(0));
                 }
             }
-            return combine(combinedSets, u);
+            return combine(combinedSets, merge, rootMerge);
         }
     }
 
@@ -117,6 +192,46 @@ public class FastMinkowskiSubsetSummer implements SubsetSummer {
      * @return Σu(AB)
      */
     static SubsetSums mergeSubsetSums(SubsetSums ssA, SubsetSums ssB, final long u) {
+        return mergeSubsetSums(ssA, ssB, 1, u);
+    }
+
+    /**
+     * Estimate cost of {@link #mergeSubsetSums(SubsetSums, SubsetSums, long)} given only shapes of its arguments.
+     */
+    static SubsetSumsShape estimateMerge(SubsetSumsShape ssA, SubsetSumsShape ssB, final long u, CostModel.Tracker tracker) {
+        final SubsetSumsShape merged = ssA.merge(ssB, u);
+        final long a = merged.subsetSpan.lowerEndpoint();
+        final long l = merged.subsetSpan.upperEndpoint() + 1 - a;
+        final long k = Math.min(merged.subsetSize, LongMath.divide(u, a, RoundingMode.CEILING));
+        final long maxInput = Math.max(ssA.maxSum, ssB.maxSum);
+
+        final long maxH;
+        if (k * k * l >= u) {
+            maxH = maxInput;
+        } else {
+            final long maxL = k * l;
+            // a sum of q elements from a+[l-1] has remainder below q * l <= maxL, so h(x) = 2l * (x / a) + x % a is bounded
+            maxH = a >= 2 * maxL ? 2 * maxL * (maxInput / a) + maxL : maxInput;
+        }
+        final long limit = 2 + 2 * maxH;
+
+        final long outputBytes = CostModel.setBytes(merged.sumsBound());
+        // output is filled while characteristic vectors are still live
+        tracker.allocate(outputBytes);
+        tracker.allocateTemporarily(CostModel.fftBytes(limit));
+        tracker.release(CostModel.setBytes(ssA.sumsBound()) + CostModel.setBytes(ssB.sumsBound()));
+        tracker.spend(CostModel.fftNanos(limit)
+                + CostModel.NANOS_PER_SET_ELEMENT * (ssA.sumsBound() + ssB.sumsBound() + merged.sumsBound()));
+        return merged;
+    }
+
+    /**
+     * Same as {@link #mergeSubsetSums(SubsetSums, SubsetSums, long)}, but only sums in {@code [lo..u-1]} are kept.
+     * Intended for the root of the {@code combine} tree, where the output window is all that's needed.
+     * Sums below {@code lo} are dropped as the convolution output is read, and if the standard algorithm applies,
+     * elements that cannot reach the window are shifted out of the characteristic vectors.
+     */
+    static SubsetSums mergeSubsetSums(SubsetSums ssA, SubsetSums ssB, final long lo, final long u) {
         // define the span a+[l−1] where all values of A and B fit
         final Range<Long> span = ssA.subsetSpan.span(ssB.subsetSpan);
         final long n = ssA.subsetSize + ssB.subsetSize;
@@ -124,23 +239,32 @@ public class FastMinkowskiSubsetSummer implements SubsetSummer {
         final long l = span.upperEndpoint() + 1 - a;
         final long k = Math.min(n, LongMath.divide(u, a, RoundingMode.CEILING));
 
-        final ImmutableSet<Long> C;
+        final ImmutableSet.Builder<Long> sums = ImmutableSet.builder();
+        addAllWithin(ssA.sums, lo, u, sums);
+        addAllWithin(ssB.sums, lo, u, sums);
         if (k * k * l >= u) {
             // apply standard algorithm
-            C = minkowskiSum(ssA.sums, ssB.sums);
+            minkowskiSum(ssA.sums, ssB.sums, lo, u, sums);
         } else {
             // apply fast algorithm
             // it basically tries to shrink the range of values in order to speed up Minkowski sum calculation
             final long maxL = k * l;
-            final ImmutableSet<Long> hA = perfectH(ssA.sums, a, maxL);
-            final ImmutableSet<Long> hB = perfectH(ssB.sums, a, maxL);
-            final ImmutableSet<Long> hAB = minkowskiSum(hA, hB);
-            C = inverseH(hAB, a, maxL);
+            minkowskiSum(ssA.sums, ssB.sums, x -> perfectH(x, a, maxL), x -> inverseH(x, a, maxL), lo, u, sums);
         }
-        final ImmutableSet<Long> sums = FluentIterable.from(Iterables.concat(ssA.sums, ssB.sums, C))
-                .filter(e -> e < u) // limit sums by target value
-                .toSet();
-        return new SubsetSums(sums, span, n);
+        return new SubsetSums(sums.build(), span, n);
+    }
+
+    /**
+     * Length bound of the perfect hash of {@code Theorem 2} for sums of at most {@code maxSummands} elements
+     * from the given span, or 0 if it wouldn't shrink their range.
+     * Image of a sum of {@code q} elements under {@code h} then lies in {@code [2 * q * maxL..(2 * q + 1) * maxL - 1]}.
+     */
+    static long perfectHashLength(Range<Long> span, long maxSummands, long u) {
+        final long a = span.lowerEndpoint();
+        final long l = span.upperEndpoint() + 1 - a;
+        final long k = Math.min(maxSummands, LongMath.divide(u, a, RoundingMode.CEILING));
+        if ((double) k * k * l >= u || a < 2 * k * l) return 0;
+        return k * l;
     }
 
     /**
@@ -154,17 +278,28 @@ public class FastMinkowskiSubsetSummer implements SubsetSummer {
     static ImmutableSet<Long> perfectH(ImmutableSet<Long> S, long d, long l) {
         if (d >= 2 * l) {
             return FluentIterable.from(S)
-                    .transform(x -> {
-                        long q = x / d;
-                        long r = x % d;
-                        return 2 * l * q + r;
-                    })
+                    .transform(x -> perfectH(x, d, l))
                     .toSet();
         } else {
             return S;
         }
     }
 
+    /**
+     * Calculate S-perfect function <em>h(x)</em> for a single element of S.
+     *
+     * @see #perfectH(ImmutableSet, long, long)
+     */
+    static long perfectH(long x, long d, long l) {
+        if (d >= 2 * l) {
+            long q = x / d;
+            long r = x % d;
+            return 2 * l * q + r;
+        } else {
+            return x;
+        }
+    }
+
     /**
      * Calculate inverse of {@link #perfectH(ImmutableSet, long, long)}.
      *
@@ -176,16 +311,32 @@ public class FastMinkowskiSubsetSummer implements SubsetSummer {
     static ImmutableSet<Long> inverseH(ImmutableSet<Long> hS, long d, long l) {
         if (d >= 2 * l) {
             return FluentIterable.from(hS)
-                    .transform(x -> {
-                        long q = x / (2 * l);
-                        long r = x % (2 * l);
-                        return d * q + r;
-                    })
+                    .transform(x -> inverseH(x, d, l))
                     .toSet();
         } else {
             return hS;
         }
     }
 
+    /**
+     * Calculate inverse of {@link #perfectH(long, long, long)}.
+     */
+    static long inverseH(long x, long d, long l) {
+        if (d >= 2 * l) {
+            long q = x / (2 * l);
+            long r = x % (2 * l);
+            return d * q + r;
+        } else {
+            return x;
+        }
+    }
+
+    private static void addAllWithin(ImmutableSet<Long> set, long lo, long u, ImmutableSet.Builder<Long> output) {
+        for (Long e : set) {
+            if (e >= lo && e < u) {
+                output.add(e);
+            }
+        }
+    }
 
 }
@@ -0,0 +1,133 @@
+package com.github.shtratos.subsetsum;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableSet;
+
+import java.io.Closeable;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.NoSuchElementException;
+
+/**
+ * Reads Subset Sums instances from a binary file via memory mapping.
+ * <p>
+ * The file is a plain sequence of instances, each one is (big-endian):
+ * <pre>
+ * long   u         bound of subset sums
+ * long   target    subset sum to decide on or find a witness for, ignored when not needed
+ * int    n         number of elements
+ * long[] elements  n elements of S
+ * </pre>
+ * The file is mapped in windows of at most {@link #WINDOW_BYTES}, so files of any size can be read.
+ * Only the framing is checked here: an instance with duplicate elements or elements out of range is still
+ * returned, it is up to the caller to reject it (see {@link Instance#hasDuplicates()}).
+ */
+final class InstanceFileReader implements Closeable {
+
+    static final int HEADER_BYTES = Long.BYTES + Long.BYTES + Integer.BYTES;
+    static final long WINDOW_BYTES = 1L << 30;
+
+    static final class Instance {
+        /**
+         * Position of the instance in the file.
+         */
+        final long offset;
+        final long u;
+        final long target;
+        /**
+         * Number of elements as written in the file, duplicates included.
+         */
+        final int n;
+        final ImmutableSet<Long> elements;
+
+        Instance(long offset, long u, long target, int n, ImmutableSet<Long> elements) {
+            this.offset = offset;
+            this.u = u;
+            this.target = target;
+            this.n = n;
+            this.elements = elements;
+        }
+
+        /**
+         * S is a set, so a repeated element would be silently merged with its first occurrence.
+         */
+        boolean hasDuplicates() {
+            return elements.size() != n;
+        }
+
+        long sizeBytes() {
+            return HEADER_BYTES + (long) n * Long.BYTES;
+        }
+    }
+
+    private final FileChannel channel;
+    private final long size;
+    private MappedByteBuffer window;
+    private long windowStart;
+    private long position;
+
+    InstanceFileReader(Path path) throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.READ);
+        this.size = channel.size();
+    }
+
+    boolean hasNext() {
+        return position < size;
+    }
+
+    Instance next() throws IOException {
+        if (!hasNext()) throw new NoSuchElementException();
+        final long offset = position;
+        ensureMapped(HEADER_BYTES);
+        final long u = window.getLong();
+        final long target = window.getLong();
+        final int n = window.getInt();
+        Preconditions.checkState(n >= 0, "corrupted instance at offset %s: n = %s", position, n);
+        position += HEADER_BYTES;
+
+        final long elementsBytes = (long) n * Long.BYTES;
+        ensureMapped(elementsBytes);
+        final ImmutableSet.Builder<Long> elements = ImmutableSet.builder();
+        for (int i = 0; i < n; i++) {
+            elements.add(window.getLong());
+        }
+        position += elementsBytes;
+        return new Instance(offset, u, target, n, elements.build());
+    }
+
+    /**
+     * Makes sure next {@code bytes} bytes starting from the current position are mapped.
+     */
+    private void ensureMapped(long bytes) throws IOException {
+        Preconditions.checkState(position + bytes <= size, "truncated instance at offset %s", position);
+        final long windowEnd = window == null ? 0 : windowStart + window.limit();
+        if (window == null || position + bytes > windowEnd) {
+            windowStart = position;
+            final long length = Math.min(size - position, Math.max(WINDOW_BYTES, bytes));
+            Preconditions.checkState(length <= Integer.MAX_VALUE, "instance at offset %s is too large", position);
+            window = channel.map(FileChannel.MapMode.READ_ONLY, windowStart, length);
+        }
+        window.position((int) (position - windowStart));
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Writes a single instance in the format read by {@link InstanceFileReader}.
+     */
+    static void writeInstance(DataOutput out, long u, long target, long... elements) throws IOException {
+        out.writeLong(u);
+        out.writeLong(target);
+        out.writeInt(elements.length);
+        for (long e : elements) {
+            out.writeLong(e);
+        }
+    }
+}
@@ -1,11 +1,18 @@
 package com.github.shtratos.subsetsum;
 
+import com.google.common.collect.FluentIterable;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Ordering;
 import com.google.common.primitives.Ints;
 import org.jtransforms.fft.FloatFFT_1D;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.LongUnaryOperator;
+
 final class MinkowskiSumUtils {
     private MinkowskiSumUtils() { }
 
@@ -20,15 +27,259 @@ final class MinkowskiSumUtils {
      * @see <a href="http://stackoverflow.com/a/11478023">Efficient Minkowski sum calculation</a>
      */
     static ImmutableSet<Long> minkowskiSum(ImmutableSet<Long> A, ImmutableSet<Long> B) {
-        final long limit = 2 + 2 * Ordering.natural().max(Iterables.concat(A, B));
+        final ImmutableSet.Builder<Long> builder = ImmutableSet.builder();
+        minkowskiSum(A, B, LongUnaryOperator.identity(), LongUnaryOperator.identity(), Long.MAX_VALUE, builder);
+        return builder.build();
+    }
+
+    /**
+     * Calculate Minkowski sum of 2 bounded sets via convolution in the image of {@code h}.
+     * <p>
+     * Elements are mapped through {@code h} straight into characteristic vectors,
+     * and convolution output is mapped back through {@code inverseH} straight into {@code output},
+     * so no intermediate sets are built.
+     *
+     * @param A        first set
+     * @param B        second set
+     * @param h        mapping applied to elements of A and B, must be additive on them
+     * @param inverseH inverse of {@code h}
+     * @param u        only sums less than {@code u} are added to the output
+     * @param output   builder to add h<sup>-1</sup>(h(A) + h(B)) ∩ [0..u-1] to
+     */
+    static void minkowskiSum(ImmutableSet<Long> A, ImmutableSet<Long> B,
+                             LongUnaryOperator h, LongUnaryOperator inverseH,
+                             long u, ImmutableSet.Builder<Long> output) {
+        minkowskiSum(A, B, h, inverseH, 0, u, output);
+    }
+
+    /**
+     * Same as {@link #minkowskiSum(ImmutableSet, ImmutableSet, LongUnaryOperator, LongUnaryOperator, long, ImmutableSet.Builder)},
+     * but only sums in {@code [lo..u-1]} are added to the output.
+     * Elements mapped below 0 are skipped, so {@code h} may drop the ones that cannot reach the output.
+     */
+    static void minkowskiSum(ImmutableSet<Long> A, ImmutableSet<Long> B,
+                             LongUnaryOperator h, LongUnaryOperator inverseH,
+                             long lo, long u, ImmutableSet.Builder<Long> output) {
+        final long limit = 2 + 2 * Math.max(max(A, h), max(B, h));
         assert limit < (1 << 29); // ensure we do not hit large array limit
-        float[] cA = characteristic(A, limit);
-        float[] cB = characteristic(B, limit);
+        float[] cA = characteristic(A, h, limit);
+        float[] cB = characteristic(B, h, limit);
         assert cA.length == cB.length; // ensure both characteristic vectors are of the same size
         assert cA.length == 2 * limit; // ensure characteristic vectors are twice the limit in size, that's required by FFT
 
         final float[] cC = convolution(cA, cB, limit);
-        return inverseCharacteristic(cC, limit);
+        inverseCharacteristic(cC, limit, inverseH, lo, u, output);
+    }
+
+    private static long max(ImmutableSet<Long> set, LongUnaryOperator h) {
+        long max = Long.MIN_VALUE;
+        for (Long e : set) {
+            max = Math.max(max, h.applyAsLong(e));
+        }
+        return max;
+    }
+
+    /**
+     * Calculate Minkowski sum of 2 sets of residues modulo {@code m} via cyclic convolution of length {@code m}.
+     *
+     * @param A first set, all elements are in {@code [0..m-1]}
+     * @param B second set, all elements are in {@code [0..m-1]}
+     * @return A + B = { (a + b) mod m | a in A, b in B }
+     */
+    static ImmutableSet<Long> cyclicMinkowskiSum(ImmutableSet<Long> A, ImmutableSet<Long> B, long m) {
+        assert m < (1 << 29); // ensure we do not hit large array limit
+        // FFT of length m wraps indices around, which is exactly the addition in Z_m
+        float[] cA = characteristic(A, LongUnaryOperator.identity(), m);
+        float[] cB = characteristic(B, LongUnaryOperator.identity(), m);
+
+        final float[] cC = convolution(cA, cB, m);
+        final ImmutableSet.Builder<Long> builder = ImmutableSet.builder();
+        inverseCharacteristic(cC, m, LongUnaryOperator.identity(), 0, m, builder);
+        return builder.build();
+    }
+
+    /**
+     * Calculate Minkowski sum of 2 bounded sets restricted to the window {@code [lo..hi-1]}.
+     *
+     * @return (A + B) ∩ [lo..hi-1]
+     */
+    static ImmutableSet<Long> minkowskiSum(ImmutableSet<Long> A, ImmutableSet<Long> B, long lo, long hi) {
+        final ImmutableSet.Builder<Long> builder = ImmutableSet.builder();
+        minkowskiSum(A, B, lo, hi, builder);
+        return builder.build();
+    }
+
+    /**
+     * Same as {@link #minkowskiSum(ImmutableSet, ImmutableSet, long, long)}, but adds the sums to {@code output}.
+     * <p>
+     * Elements below {@code lo - max(A ∪ B)} cannot reach the window, so both sets are shifted down by that amount
+     * while mapped into characteristic vectors. This only shortens them if the window lies above the max of
+     * the sets, which is not the case at the root of the {@code combine} tree for most inputs.
+     */
+    static void minkowskiSum(ImmutableSet<Long> A, ImmutableSet<Long> B, long lo, long hi,
+                             ImmutableSet.Builder<Long> output) {
+        if (A.isEmpty() || B.isEmpty()) return;
+        final long maxA = max(A, LongUnaryOperator.identity());
+        final long maxB = max(B, LongUnaryOperator.identity());
+        if (maxA + maxB < lo) return;
+        final long offset = Math.max(0, lo - Math.max(maxA, maxB));
+        if (offset == 0) {
+            minkowskiSum(A, B, LongUnaryOperator.identity(), LongUnaryOperator.identity(), lo, hi, output);
+        } else {
+            minkowskiSum(A, B, x -> x - offset, x -> x + 2 * offset, lo, hi, output);
+        }
+    }
+
+    /**
+     * Calculate Minkowski sum of 2 sets of (sum, cardinality) pairs, keeping only pairs with cardinality
+     * at most {@code k} and sum less than {@code u}.
+     * <p>
+     * Pairs are packed as {@code sum * w + cardinality}, where {@code w} exceeds any resulting cardinality,
+     * so a single 1D convolution adds both dimensions without carries (Kronecker substitution).
+     * If packed vectors would exceed the array limit, layers are convolved pair by pair instead.
+     *
+     * @param A sets of sums layered by cardinality: {@code A[c]} contains sums of {@code c} elements
+     * @param B sets of sums layered by cardinality: {@code B[c]} contains sums of {@code c} elements
+     * @return layers of A + B, truncated at cardinality {@code k}, without trailing empty layers
+     */
+    static ImmutableList<ImmutableSet<Long>> layeredMinkowskiSum(List<ImmutableSet<Long>> A,
+                                                                  List<ImmutableSet<Long>> B,
+                                                                  int k, long u) {
+        final int maxCardinality = (A.size() - 1) + (B.size() - 1);
+        final long w = maxCardinality + 1;
+        final List<ImmutableSet.Builder<Long>> builders = layerBuilders(Math.min(k, maxCardinality) + 1);
+        if (packedLimit(A, B, w) >= (1 << 29)) {
+            for (int cA = 0; cA < A.size(); cA++) {
+                for (int cB = 0; cB < B.size() && cA + cB < builders.size(); cB++) {
+                    if (A.get(cA).isEmpty() || B.get(cB).isEmpty()) continue;
+                    minkowskiSum(A.get(cA), B.get(cB), LongUnaryOperator.identity(), LongUnaryOperator.identity(),
+                            u, builders.get(cA + cB));
+                }
+            }
+            return buildLayers(builders);
+        }
+
+        final ImmutableSet<Long> packedC = minkowskiSum(packLayers(A, w), packLayers(B, w));
+        for (Long e : packedC) {
+            final long sum = e / w;
+            final int c = (int) (e % w);
+            if (c < builders.size() && sum < u) {
+                builders.get(c).add(sum);
+            }
+        }
+        return buildLayers(builders);
+    }
+
+    /**
+     * Length of characteristic vectors of {@link #layeredMinkowskiSum(List, List, int, long)}
+     * for layers packed with width {@code w}.
+     */
+    static long packedLimit(List<ImmutableSet<Long>> A, List<ImmutableSet<Long>> B, long w) {
+        final long maxSum = Math.max(maxOfLayers(A), maxOfLayers(B));
+        return 2 + 2 * (maxSum * w + w - 1);
+    }
+
+    /**
+     * Same as {@link #layeredMinkowskiSum(List, List, int, long)}, but in the image of {@code h},
+     * which tells cardinalities of sums apart by itself, so no packing is needed.
+     *
+     * @param h        mapping applied to sums of A and B, must be additive on them and
+     *                 map a sum of {@code c} elements to {@code [c * block..(c + 1) * block - 1]},
+     *                 the same holding for sums of A + B
+     * @param inverseH inverse of {@code h}
+     * @param block    length of the image of each layer
+     */
+    static ImmutableList<ImmutableSet<Long>> layeredMinkowskiSum(List<ImmutableSet<Long>> A,
+                                                                  List<ImmutableSet<Long>> B,
+                                                                  LongUnaryOperator h, LongUnaryOperator inverseH,
+                                                                  long block, int k, long u) {
+        final ImmutableSet.Builder<Long> hashedC = ImmutableSet.builder();
+        // sums of different cardinality have different images, so layers can be merged without losing any
+        minkowskiSum(ImmutableSet.copyOf(Iterables.concat(A)), ImmutableSet.copyOf(Iterables.concat(B)),
+                h, LongUnaryOperator.identity(), Long.MAX_VALUE, hashedC);
+
+        final List<ImmutableSet.Builder<Long>> builders = layerBuilders(Math.min(k, (A.size() - 1) + (B.size() - 1)) + 1);
+        for (Long e : hashedC.build()) {
+            final long c = e / block;
+            final long sum = inverseH.applyAsLong(e);
+            if (c < builders.size() && sum < u) {
+                builders.get((int) c).add(sum);
+            }
+        }
+        return buildLayers(builders);
+    }
+
+    /**
+     * Same as {@link #layeredMinkowskiSum(List, List, int, long)}, but by adding up all pairs of sums
+     * instead of convolution, which pays off while layers are small.
+     */
+    static ImmutableList<ImmutableSet<Long>> pairwiseLayeredMinkowskiSum(List<ImmutableSet<Long>> A,
+                                                                          List<ImmutableSet<Long>> B,
+                                                                          int k, long u) {
+        final int layers = Math.min(k, (A.size() - 1) + (B.size() - 1)) + 1;
+        final long[] pairs = new long[layers];
+        for (int cA = 0; cA < A.size(); cA++) {
+            for (int cB = 0; cB < B.size() && cA + cB < layers; cB++) {
+                pairs[cA + cB] += (long) A.get(cA).size() * B.get(cB).size();
+            }
+        }
+        final List<ImmutableSet.Builder<Long>> builders = layerBuilders(layers);
+        for (int c = 0; c < layers; c++) {
+            // sums are collected unboxed and deduplicated before going into the set
+            final long[] sums = new long[Ints.checkedCast(pairs[c])];
+            int size = 0;
+            for (int cA = 0; cA <= c && cA < A.size(); cA++) {
+                if (c - cA >= B.size()) continue;
+                for (Long a : A.get(cA)) {
+                    for (Long b : B.get(c - cA)) {
+                        if (a + b < u) sums[size++] = a + b;
+                    }
+                }
+            }
+            Arrays.sort(sums, 0, size);
+            for (int i = 0; i < size; i++) {
+                if (i == 0 || sums[i] != sums[i - 1]) builders.get(c).add(sums[i]);
+            }
+        }
+        return buildLayers(builders);
+    }
+
+    private static List<ImmutableSet.Builder<Long>> layerBuilders(int layers) {
+        final List<ImmutableSet.Builder<Long>> builders = new ArrayList<>(layers);
+        for (int c = 0; c < layers; c++) {
+            builders.add(ImmutableSet.builder());
+        }
+        return builders;
+    }
+
+    /**
+     * Trailing empty layers are dropped, so that cardinalities of further merges are bounded by actual ones.
+     */
+    private static ImmutableList<ImmutableSet<Long>> buildLayers(List<ImmutableSet.Builder<Long>> builders) {
+        final List<ImmutableSet<Long>> layers = FluentIterable.from(builders).transform(ImmutableSet.Builder::build).toList();
+        int size = layers.size();
+        while (size > 1 && layers.get(size - 1).isEmpty()) {
+            size--;
+        }
+        return ImmutableList.copyOf(layers.subList(0, size));
+    }
+
+    private static long maxOfLayers(List<ImmutableSet<Long>> layers) {
+        long max = 0;
+        for (ImmutableSet<Long> layer : layers) {
+            max = Math.max(max, max(layer, LongUnaryOperator.identity()));
+        }
+        return max;
+    }
+
+    private static ImmutableSet<Long> packLayers(List<ImmutableSet<Long>> layers, long w) {
+        final ImmutableSet.Builder<Long> builder = ImmutableSet.builder();
+        for (int c = 0; c < layers.size(); c++) {
+            for (Long sum : layers.get(c)) {
+                builder.add(sum * w + c);
+            }
+        }
+        return builder.build();
     }
 
     static float[] convolution(float[] cA, float[] cB, long limit) {
@@ -55,17 +306,20 @@ final class MinkowskiSumUtils {
         return cA;
     }
 
-    static private float[] characteristic(ImmutableSet<Long> set, long limit) {
+    static private float[] characteristic(ImmutableSet<Long> set, LongUnaryOperator h, long limit) {
         final float[] c = new float[Ints.checkedCast(limit * 2)];
         for (Long e : set) {
-            assert e >= 0 && e < limit;
-            c[Ints.checkedCast(e)] = 1;
+            final long he = h.applyAsLong(e);
+            assert he < limit;
+            if (he >= 0) {
+                c[Ints.checkedCast(he)] = 1;
+            }
         }
         return c;
     }
 
-    static private ImmutableSet<Long> inverseCharacteristic(float[] c, long limit) {
-        final ImmutableSet.Builder<Long> builder = ImmutableSet.builder();
+    static private void inverseCharacteristic(float[] c, long limit, LongUnaryOperator inverseH,
+                                              long lo, long u, ImmutableSet.Builder<Long> output) {
         assert limit < c.length;
         final float eps = 0.5f;
         if (DEBUG_MODE) {
@@ -74,10 +328,12 @@ final class MinkowskiSumUtils {
         for (int i = 0; i < limit; i++) {
             final float v = Math.abs(c[i * 2]);
             if (v > eps) {
-                builder.add((long) i);
+                final long e = inverseH.applyAsLong(i);
+                if (e >= lo && e < u) {
+                    output.add(e);
+                }
             }
         }
-        return builder.build();
     }
 
     static private void printVectorStats(float[] c, long limit, float eps) {
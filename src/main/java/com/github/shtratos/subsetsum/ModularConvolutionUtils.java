@@ -0,0 +1,276 @@
+package com.github.shtratos.subsetsum;
+
+import com.google.common.base.Preconditions;
+import com.google.common.math.LongMath;
+
+import java.math.RoundingMode;
+import java.util.Arrays;
+
+/**
+ * Exact convolution of integer vectors modulo a prime {@code p < 2^31}.
+ * <p>
+ * Convolution is done via number theoretic transform modulo 3 NTT-friendly primes,
+ * results are restored modulo {@code p} via Chinese remainder theorem (Garner's algorithm).
+ * Product of NTT primes is ~2^86, which is enough to hold any coefficient of a convolution
+ * of vectors of length up to {@link #MAX_LENGTH} with elements less than 2^31.
+ */
+final class ModularConvolutionUtils {
+    private ModularConvolutionUtils() { }
+
+    static final long MAX_MODULUS = Integer.MAX_VALUE;
+    static final int MAX_LENGTH = 1 << 23;
+
+    // all primes are c * 2^k + 1 with k >= 23, are below 2^30 and have 3 as primitive root
+    private static final NttPrime M1 = new NttPrime(998_244_353L);
+    private static final NttPrime M2 = new NttPrime(167_772_161L);
+    private static final NttPrime M3 = new NttPrime(469_762_049L);
+    private static final long PRIMITIVE_ROOT = 3;
+
+    private static final long M1_INV_MOD_M2 = modInverse(M1.mod, M2.mod);
+    private static final long M1M2_INV_MOD_M3 = modInverse((long) M1.mod % M3.mod * M2.mod % M3.mod, M3.mod);
+
+    // below this size naive quadratic convolution is faster than 3 transforms
+    private static final int NAIVE_THRESHOLD = 32;
+
+    /**
+     * Calculate convolution of 2 vectors modulo {@code p}, truncated to first {@code limit} elements.
+     *
+     * @param a     first vector, all elements are in {@code [0..p-1]}
+     * @param b     second vector, all elements are in {@code [0..p-1]}
+     * @param limit max length of the result
+     * @param p     prime modulus
+     * @return c[i] = sum(a[j] * b[i - j]) mod p, for i in {@code [0..min(limit, |a| + |b| - 1) - 1]}
+     */
+    static long[] convolution(long[] a, long[] b, int limit, long p) {
+        Preconditions.checkArgument(p > 1 && p <= MAX_MODULUS, "modulus must be in range: [2..%s], was: %s", MAX_MODULUS, p);
+        Preconditions.checkArgument(a.length > 0 && b.length > 0, "vectors must not be empty");
+        final int resultLength = Math.min(limit, a.length + b.length - 1);
+        // elements beyond the result length do not contribute to it
+        final long[] ta = a.length > resultLength ? Arrays.copyOf(a, resultLength) : a;
+        final long[] tb = b.length > resultLength ? Arrays.copyOf(b, resultLength) : b;
+
+        if (Math.min(ta.length, tb.length) <= NAIVE_THRESHOLD) {
+            return naiveConvolution(ta, tb, resultLength, p);
+        }
+
+        final int fullLength = ta.length + tb.length - 1;
+        final int size = 1 << LongMath.log2(fullLength, RoundingMode.CEILING);
+        Preconditions.checkArgument(size <= MAX_LENGTH, "convolution is too long: %s > %s", size, MAX_LENGTH);
+
+        return restore(convolution(ta, tb, size, resultLength, M1), convolution(ta, tb, size, resultLength, M2),
+                convolution(ta, tb, size, resultLength, M3), p);
+    }
+
+    /**
+     * Calculate cyclic convolution of 2 vectors modulo {@code p}, i.e. their product modulo {@code x^size - 1}.
+     * Useful when only a part of the product is needed that wrapped around terms do not reach,
+     * the transform is then up to 2 times shorter than the one of {@link #convolution}.
+     *
+     * @param a    first vector, all elements are in {@code [0..p-1]}
+     * @param b    second vector, all elements are in {@code [0..p-1]}
+     * @param size power of 2, not less than the length of either vector
+     * @param p    prime modulus
+     * @return c[i] = sum(a[j] * b[k]) mod p over {@code (j + k) mod size = i}, for i in {@code [0..size-1]}
+     */
+    static long[] cyclicConvolution(long[] a, long[] b, int size, long p) {
+        Preconditions.checkArgument(p > 1 && p <= MAX_MODULUS, "modulus must be in range: [2..%s], was: %s", MAX_MODULUS, p);
+        Preconditions.checkArgument(size > 0 && Integer.bitCount(size) == 1 && size <= MAX_LENGTH,
+                "size must be a power of 2 up to %s, was: %s", MAX_LENGTH, size);
+        Preconditions.checkArgument(a.length <= size && b.length <= size, "vectors are longer than %s", size);
+        return restore(convolution(a, b, size, size, M1), convolution(a, b, size, size, M2),
+                convolution(a, b, size, size, M3), p);
+    }
+
+    /**
+     * @return values modulo {@code p} given their residues modulo all 3 NTT primes
+     */
+    private static long[] restore(long[] c1, long[] c2, long[] c3, long p) {
+        final int resultLength = c1.length;
+        final long m1ModP = M1.mod % p;
+        final long m1m2ModP = (long) M1.mod * M2.mod % p;
+        final long m1ModM3 = M1.mod % M3.mod;
+        final long[] c = new long[resultLength];
+        for (int i = 0; i < resultLength; i++) {
+            // x = r1 + M1 * t2 + M1 * M2 * t3, with t2 < M2 and t3 < M3
+            final long r1 = c1[i];
+            final long t2 = Math.floorMod(c2[i] - r1, M2.mod) * M1_INV_MOD_M2 % M2.mod;
+            final long x12ModM3 = (r1 + m1ModM3 * t2) % M3.mod;
+            final long t3 = Math.floorMod(c3[i] - x12ModM3, M3.mod) * M1M2_INV_MOD_M3 % M3.mod;
+            c[i] = (r1 % p + m1ModP * t2 % p + m1m2ModP * t3 % p) % p;
+        }
+        return c;
+    }
+
+    private static long[] naiveConvolution(long[] a, long[] b, int resultLength, long p) {
+        final long[] c = new long[resultLength];
+        for (int i = 0; i < a.length; i++) {
+            if (a[i] == 0) continue;
+            for (int j = 0; j < b.length && i + j < resultLength; j++) {
+                c[i + j] = (c[i + j] + a[i] * b[j] % p) % p;
+            }
+        }
+        return c;
+    }
+
+    private static long[] convolution(long[] a, long[] b, int size, int resultLength, NttPrime prime) {
+        final int[] fa = reduce(a, size, prime);
+        final int[] fb = reduce(b, size, prime);
+        final int[] roots = prime.roots(size, false);
+        forwardNtt(fa, roots, prime);
+        forwardNtt(fb, roots, prime);
+        for (int i = 0; i < size; i++) {
+            fa[i] = prime.multiply(fa[i], fb[i]);
+        }
+        inverseNtt(fa, prime.roots(size, true), prime);
+        // multiplying a Montgomery form by a plain number gives a plain number
+        final int sizeInverse = (int) modInverse(size, prime.mod);
+        final long[] c = new long[resultLength];
+        for (int i = 0; i < resultLength; i++) {
+            c[i] = prime.multiply(fa[i], sizeInverse);
+        }
+        return c;
+    }
+
+    /**
+     * @return {@code a} padded to {@code size} and converted to Montgomery form modulo {@code prime}
+     */
+    private static int[] reduce(long[] a, int size, NttPrime prime) {
+        final int[] r = new int[size];
+        for (int i = 0; i < a.length; i++) {
+            r[i] = prime.toMontgomery(a[i] % prime.mod);
+        }
+        return r;
+    }
+
+    /**
+     * In-place decimation-in-frequency transform of a vector in Montgomery form, {@code a.length} must be a power of 2.
+     * Takes the vector in natural order and leaves the result in bit-reversed order,
+     * which is fine for pointwise multiplication followed by {@link #inverseNtt}.
+     *
+     * @param roots see {@link NttPrime#roots(int, boolean)}
+     */
+    private static void forwardNtt(int[] a, int[] roots, NttPrime prime) {
+        final int n = a.length;
+        final int mod = prime.mod;
+        for (int len = n; len >= 2; len >>= 1) {
+            final int half = len >> 1;
+            for (int i = 0; i < n; i += len) {
+                for (int j = 0; j < half; j++) {
+                    final int x = a[i + j];
+                    final int y = a[i + j + half];
+                    final int sum = x + y;
+                    a[i + j] = sum < mod ? sum : sum - mod;
+                    a[i + j + half] = prime.multiply(x - y + mod, roots[half + j]);
+                }
+            }
+        }
+    }
+
+    /**
+     * In-place decimation-in-time transform of a vector in Montgomery form, {@code a.length} must be a power of 2.
+     * Takes the vector in bit-reversed order and leaves the result in natural order. Result is not divided by
+     * {@code a.length}.
+     *
+     * @param roots see {@link NttPrime#roots(int, boolean)}
+     */
+    private static void inverseNtt(int[] a, int[] roots, NttPrime prime) {
+        final int n = a.length;
+        final int mod = prime.mod;
+        for (int len = 2; len <= n; len <<= 1) {
+            final int half = len >> 1;
+            for (int i = 0; i < n; i += len) {
+                for (int j = 0; j < half; j++) {
+                    final int x = a[i + j];
+                    final int y = prime.multiply(a[i + j + half], roots[half + j]);
+                    final int sum = x + y;
+                    final int diff = x - y;
+                    a[i + j] = sum < mod ? sum : sum - mod;
+                    a[i + j + half] = diff >= 0 ? diff : diff + mod;
+                }
+            }
+        }
+    }
+
+    /**
+     * NTT-friendly prime below 2^30 with Montgomery multiplication, {@code R = 2^32}.
+     * Avoids division by a non-constant modulus in the transform loops.
+     */
+    private static final class NttPrime {
+        private static final long MASK = 0xFFFF_FFFFL;
+
+        final int mod;
+        /**
+         * -mod<sup>-1</sup> mod R
+         */
+        private final long negInverse;
+        /**
+         * R<sup>2</sup> mod mod
+         */
+        private final int r2;
+
+        NttPrime(long mod) {
+            this.mod = (int) mod;
+            long inverse = mod; // correct to 3 bits, every Newton step doubles that
+            for (int i = 0; i < 4; i++) {
+                inverse = inverse * (2 - mod * inverse) & MASK;
+            }
+            this.negInverse = -inverse & MASK;
+            final long r = (1L << 32) % mod;
+            this.r2 = (int) (r * r % mod);
+        }
+
+        /**
+         * @return x * y / R mod mod, for {@code x, y} in {@code [0..2*mod-1]}
+         */
+        int multiply(int x, int y) {
+            final long t = (long) x * y;
+            final long m = t * negInverse & MASK;
+            final long r = (t + m * mod) >>> 32;
+            return (int) (r < mod ? r : r - mod);
+        }
+
+        int toMontgomery(long x) {
+            return multiply((int) x, r2);
+        }
+
+        /**
+         * @return table of powers of roots of unity in Montgomery form:
+         * element {@code half + j} is the {@code j}th power of the root of order {@code 2 * half} (or its inverse)
+         */
+        int[] roots(int size, boolean invert) {
+            final int[] roots = new int[Math.max(2, size)];
+            for (int half = 1; half < size; half <<= 1) {
+                long w = modPow(PRIMITIVE_ROOT, (mod - 1) / (2 * half), mod);
+                if (invert) {
+                    w = modInverse(w, mod);
+                }
+                final int wm = toMontgomery(w);
+                roots[half] = toMontgomery(1);
+                for (int j = 1; j < half; j++) {
+                    roots[half + j] = multiply(roots[half + j - 1], wm);
+                }
+            }
+            return roots;
+        }
+    }
+
+    static long modPow(long base, long exp, long mod) {
+        long result = 1;
+        long b = base % mod;
+        while (exp > 0) {
+            if ((exp & 1) == 1) {
+                result = result * b % mod;
+            }
+            b = b * b % mod;
+            exp >>= 1;
+        }
+        return result;
+    }
+
+    /**
+     * Modular inverse via Fermat's little theorem, {@code mod} must be prime.
+     */
+    static long modInverse(long x, long mod) {
+        return modPow(x, mod - 2, mod);
+    }
+}
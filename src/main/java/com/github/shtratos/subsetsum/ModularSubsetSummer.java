@@ -0,0 +1,72 @@
+package com.github.shtratos.subsetsum;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Range;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static com.github.shtratos.subsetsum.FastMinkowskiSubsetSummer.combine;
+import static com.github.shtratos.subsetsum.MinkowskiSumUtils.cyclicMinkowskiSum;
+import static com.google.common.base.Preconditions.checkState;
+
+/**
+ * Subset Sums problem modulo {@code m}: only residues of subset sums are calculated.
+ * <p>
+ * Uses the same {@code combine} tree as {@link FastMinkowskiSubsetSummer}, but {@link SubsetSums} hold residues
+ * and are merged via cyclic convolution of length {@code m} (see {@link MinkowskiSumUtils#cyclicMinkowskiSum}),
+ * so running time depends on {@code m} instead of the total sum of {@code S}.
+ */
+public class ModularSubsetSummer {
+
+    /**
+     * Given a positive integer {@code m} and a set of {@code n} positive integers {@code S},
+     * calculate residues modulo {@code m} of sums of all non-empty subsets of {@code S}.
+     */
+    public ImmutableSet<Long> subsetSums(Set<Long> inputS, final long m) {
+        Preconditions.checkArgument(m > 0, "m must be natural, was: %s", m);
+        Preconditions.checkArgument(inputS.stream().allMatch(e -> e > 0), "all elements in S must be positive");
+        // cyclic convolution of length m has to fit the FFT array limit, see MinkowskiSumUtils#cyclicMinkowskiSum
+        Preconditions.checkArgument(m < (1 << 29), "m must be below 2^29, was: %s", m);
+        if (inputS.isEmpty()) return ImmutableSet.of();
+
+        // elements with equal residues are still distinct elements, so they are not deduplicated
+        final List<SubsetSums> B = new ArrayList<>(inputS.size());
+        for (Long s_j : inputS) {
+            B.add(SubsetSums.ofSingleElement(s_j % m));
+        }
+        final SubsetSums output = combine(B, (ssA, ssB) -> mergeSubsetSums(ssA, ssB, m));
+
+        checkState(output.subsetSize == inputS.size());
+        checkState(output.sums.stream().allMatch(e -> e >= 0 && e < m));
+        return output.sums;
+    }
+
+    /**
+     * Calculate residues of subset sums of concatenation of 2 sets,
+     * given residues of subset sums of those 2 sets: Σ(AB) = Σ(A) ∪ Σ(B) ∪ (Σ(A) + Σ(B)).
+     */
+    static SubsetSums mergeSubsetSums(SubsetSums ssA, SubsetSums ssB, final long m) {
+        final Range<Long> span = ssA.subsetSpan.span(ssB.subsetSpan);
+        final long n = ssA.subsetSize + ssB.subsetSize;
+        if (ssA.sums.size() == m || ssB.sums.size() == m) {
+            // every residue is already reachable
+            return new SubsetSums(ssA.sums.size() == m ? ssA.sums : ssB.sums, span, n);
+        }
+
+        final ImmutableSet.Builder<Long> sums = ImmutableSet.<Long>builder().addAll(ssA.sums).addAll(ssB.sums);
+        if ((long) ssA.sums.size() * ssB.sums.size() <= m) {
+            // small sets are cheaper to add pairwise than to convolve
+            for (Long a : ssA.sums) {
+                for (Long b : ssB.sums) {
+                    sums.add((a + b) % m);
+                }
+            }
+        } else {
+            sums.addAll(cyclicMinkowskiSum(ssA.sums, ssB.sums, m));
+        }
+        return new SubsetSums(sums.build(), span, n);
+    }
+}
@@ -58,4 +58,41 @@ public class OptimizedDynamicProgrammingSubsetSummer implements SubsetSummer {
         return sums;
     }
 
+    /**
+     * Rows of sums no subset reaches are scanned to the end, the others exit early,
+     * after about {@code sqrt(n)} columns on random inputs.
+     */
+    @Override
+    public CostEstimate estimateCost(Set<Long> inputS, long u) {
+        validateInput(inputS, u);
+        final CostModel.Tracker tracker = new CostModel.Tracker();
+        final long n = inputS.size();
+        tracker.allocate(CostModel.setBytes(n));
+        if (inputS.isEmpty()) return tracker.toEstimate();
+
+        tracker.allocate(CostModel.arrayBytes(n, Integer.BYTES) + CostModel.arrayBytes(u, Integer.BYTES));
+        final long sums = reachableSumsBound(inputS, u);
+        tracker.spend(CostModel.NANOS_PER_DP_CELL * ((u - 1 - sums) * (double) (n - 1) + sums * Math.sqrt(n)));
+
+        tracker.allocate(CostModel.setBytes(sums));
+        tracker.spend(CostModel.NANOS_PER_SET_ELEMENT * sums);
+        return tracker.toEstimate();
+    }
+
+    /**
+     * Sums in {@code [S[j]..S[j+1]-1]} are sums of subsets of {@code S[0..j]}, so there are no more of them
+     * than either the length of the gap or the number of such subsets.
+     *
+     * @return upper bound of the number of non-zero subset sums less than {@code u}
+     */
+    static long reachableSumsBound(Set<Long> inputS, long u) {
+        final long[] S = inputS.stream().mapToLong(Long::longValue).sorted().toArray();
+        long sums = 0;
+        for (int j = 0; j < S.length; j++) {
+            final long gap = (j + 1 < S.length ? S[j + 1] : u) - S[j];
+            sums += j + 1 < Long.SIZE - 1 ? Math.min(gap, 1L << (j + 1)) : gap;
+        }
+        return sums;
+    }
+
 }
@@ -0,0 +1,49 @@
+package com.github.shtratos.subsetsum;
+
+import com.google.common.collect.Range;
+
+/**
+ * Subset sums for some set with the number of subsets reaching each of them, modulo a prime.
+ * Sums are stored sparsely, only the ones with non-zero counts are kept.
+ * Contains some metadata about the set.
+ */
+class SubsetSumCounts {
+    /**
+     * Distinct subset sums in ascending order, the empty sum 0 included.
+     */
+    final long[] sums;
+    /**
+     * {@code counts[i]} is the number of subsets summing to {@code sums[i]}, never 0.
+     */
+    final long[] counts;
+    /**
+     * Range of values in the current set.
+     */
+    final Range<Long> subsetSpan;
+    /**
+     * Elements of the current set.
+     */
+    final long[] elements;
+
+    SubsetSumCounts(long[] sums, long[] counts, Range<Long> subsetSpan, long[] elements) {
+        this.sums = sums;
+        this.counts = counts;
+        this.subsetSpan = subsetSpan;
+        this.elements = elements;
+    }
+
+    /**
+     * Subsets of {x} are the empty one and {x} itself.
+     */
+    static SubsetSumCounts ofSingleElement(long x) {
+        return new SubsetSumCounts(new long[]{0, x}, new long[]{1, 1}, Range.closed(x, x), new long[]{x});
+    }
+
+    int size() {
+        return sums.length;
+    }
+
+    long maxSum() {
+        return sums[sums.length - 1];
+    }
+}
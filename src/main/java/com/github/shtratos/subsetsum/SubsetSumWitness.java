@@ -0,0 +1,70 @@
+package com.github.shtratos.subsetsum;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.FluentIterable;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Recovers a subset with the given sum using any {@link SubsetSummer}.
+ * <p>
+ * S is split in halves L and R, and subset sums of both are calculated.
+ * For the first {@code a} such that {@code a} is a subset sum of L and {@code t - a} is a subset sum of R
+ * (either can be the empty sum), the search recurses into both halves.
+ * It takes {@code O(log n)} levels, each costing about as much as one {@code subsetSums(S, t + 1)} call.
+ */
+final class SubsetSumWitness {
+    private SubsetSumWitness() { }
+
+    /**
+     * @param summer engine to calculate subset sums with
+     * @param S      elements, all positive
+     * @param t      target sum, positive
+     * @return elements of some subset of S summing to {@code t}, if there's one
+     */
+    static Optional<ImmutableList<Long>> find(SubsetSummer summer, List<Long> S, long t) {
+        Preconditions.checkArgument(t > 0, "t must be natural, was: %s", t);
+        // elements above t cannot be a part of the subset
+        final ImmutableList<Long> candidates = FluentIterable.from(S).filter(e -> e <= t).toList();
+        if (!summer.subsetSums(ImmutableSet.copyOf(candidates), t, t + 1).contains(t)) {
+            return Optional.empty();
+        }
+        final ImmutableList.Builder<Long> witness = ImmutableList.builder();
+        collect(summer, candidates, t, witness);
+        return Optional.of(witness.build());
+    }
+
+    /**
+     * Adds to {@code witness} elements of a subset of S summing to {@code t}, such subset must exist.
+     */
+    private static void collect(SubsetSummer summer, List<Long> S, long t, ImmutableList.Builder<Long> witness) {
+        if (t == 0) return;
+        if (S.size() == 1) {
+            Preconditions.checkState(S.get(0) == t, "no subset of %s sums to %s", S, t);
+            witness.add(t);
+            return;
+        }
+        final List<Long> L = S.subList(0, S.size() / 2);
+        final List<Long> R = S.subList(S.size() / 2, S.size());
+        final ImmutableSet<Long> sumsL = sumsWithEmpty(summer, L, t);
+        final ImmutableSet<Long> sumsR = sumsWithEmpty(summer, R, t);
+        for (Long a : sumsL) {
+            if (sumsR.contains(t - a)) {
+                collect(summer, L, a, witness);
+                collect(summer, R, t - a, witness);
+                return;
+            }
+        }
+        throw new IllegalStateException("no subset of " + S + " sums to " + t);
+    }
+
+    private static ImmutableSet<Long> sumsWithEmpty(SubsetSummer summer, List<Long> S, long t) {
+        return ImmutableSet.<Long>builder()
+                .add(0L)
+                .addAll(summer.subsetSums(FluentIterable.from(S).filter(e -> e <= t).toSet(), t + 1))
+                .build();
+    }
+}
@@ -1,6 +1,7 @@
 package com.github.shtratos.subsetsum;
 
 import com.google.common.base.Preconditions;
+import com.google.common.collect.FluentIterable;
 import com.google.common.collect.ImmutableSet;
 
 import java.util.Set;
@@ -16,12 +17,38 @@ public interface SubsetSummer {
      */
     ImmutableSet<Long> subsetSums(Set<Long> s, long u);
 
+    /**
+     * Same as {@link #subsetSums(Set, long)}, but only sums in the range {@code [lo..hi-1]} are returned.
+     * Elements of {@code S} must be in the range {@code [1..hi-1]}.
+     */
+    default ImmutableSet<Long> subsetSums(Set<Long> s, long lo, long hi) {
+        validateWindow(lo, hi);
+        return FluentIterable.from(subsetSums(s, hi)).filter(e -> e >= lo).toSet();
+    }
+
+    /**
+     * Estimate peak memory and running time of {@link #subsetSums(Set, long)} on the given input without solving it.
+     */
+    CostEstimate estimateCost(Set<Long> s, long u);
+
     default void validateInput(Set<Long> s, long u) {
+        checkInput(s, u);
+    }
+
+    /**
+     * Checks the input constraints of {@link #subsetSums(Set, long)}, also shared by engines solving
+     * other variants of the problem on the same input.
+     */
+    static void checkInput(Set<Long> s, long u) {
         Preconditions.checkArgument(u > 0, "u must be natural, was: %s", u);
         Preconditions.checkArgument(s.stream().allMatch(e -> e > 0 && e < u),
                 "all elements in S must be in range: [1..%s]", u - 1);
     }
 
+    default void validateWindow(long lo, long hi) {
+        Preconditions.checkArgument(lo <= hi, "window must not be inverted, was: [%s..%s)", lo, hi);
+    }
+
     default void validateOutput(Set<Long> output, long u) {
         Preconditions.checkState(output.stream().allMatch(e -> e > 0 && e < u),
                 "all elements in output must be in range: [1..%s", u - 1);
@@ -0,0 +1,55 @@
+package com.github.shtratos.subsetsum;
+
+import com.google.common.collect.Range;
+
+/**
+ * Bounds of {@link SubsetSums} for some set, known without calculating the sums.
+ * Used to estimate costs by simulating the {@code combine} tree.
+ */
+class SubsetSumsShape {
+    /**
+     * Range of values in the current set.
+     */
+    final Range<Long> subsetSpan;
+    /**
+     * Size of the current set.
+     */
+    final long subsetSize;
+    /**
+     * Upper bound of subset sums of the current set that are less than {@code u}.
+     */
+    final long maxSum;
+
+    SubsetSumsShape(Range<Long> subsetSpan, long subsetSize, long maxSum) {
+        this.subsetSpan = subsetSpan;
+        this.subsetSize = subsetSize;
+        this.maxSum = maxSum;
+    }
+
+    static SubsetSumsShape ofSingleElement(long x) {
+        return new SubsetSumsShape(Range.closed(x, x), 1, x);
+    }
+
+    /**
+     * Shape of subset sums of concatenation of the current set and the {@code other} one.
+     */
+    SubsetSumsShape merge(SubsetSumsShape other, long u) {
+        return new SubsetSumsShape(subsetSpan.span(other.subsetSpan), subsetSize + other.subsetSize,
+                Math.min(u - 1, maxSum + other.maxSum));
+    }
+
+    /**
+     * Upper bound of the number of non-empty subset sums less than {@code u}.
+     * Sums of {@code j} elements from {@code [a..a+l-1]} lie in {@code [j*a..j*(a+l-1)]},
+     * which is much less than the whole range for narrow spans.
+     */
+    long sumsBound() {
+        final long a = subsetSpan.lowerEndpoint();
+        final long l = subsetSpan.upperEndpoint() + 1 - a;
+        final long rangeBound = Math.max(0, maxSum - a + 1);
+        final long maxSummands = Math.min(subsetSize, maxSum / a);
+        final double spanBound = maxSummands + (l - 1) * (maxSummands * (maxSummands + 1) / 2.0);
+        final long bound = spanBound < rangeBound ? (long) spanBound : rangeBound;
+        return subsetSize < 62 ? Math.min(bound, (1L << subsetSize) - 1) : bound;
+    }
+}
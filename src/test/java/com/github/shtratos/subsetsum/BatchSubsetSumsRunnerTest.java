@@ -0,0 +1,251 @@
+package com.github.shtratos.subsetsum;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.primitives.Longs;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import pl.edu.icm.jlargearrays.ConcurrencyUtils;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+
+import static com.github.shtratos.subsetsum.TestUtils.naiveSubsetSumsSet;
+import static com.github.shtratos.subsetsum.TestUtils.randomSetOfFixedSize;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class BatchSubsetSumsRunnerTest {
+
+    private static final int INSTANCES = 20;
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void instances_are_read_back() throws Exception {
+        final List<InstanceFileReader.Instance> instances = randomInstances(new Random(1));
+        final File input = write(instances);
+
+        try (InstanceFileReader reader = new InstanceFileReader(input.toPath())) {
+            for (InstanceFileReader.Instance expected : instances) {
+                assertTrue(reader.hasNext());
+                final InstanceFileReader.Instance actual = reader.next();
+                assertEquals(expected.u, actual.u);
+                assertEquals(expected.target, actual.target);
+                assertEquals(expected.elements, actual.elements);
+            }
+            assertFalse(reader.hasNext());
+        }
+    }
+
+    @Test
+    public void bitmaps_are_written_in_order() throws Exception {
+        final List<InstanceFileReader.Instance> instances = randomInstances(new Random(2));
+        for (BatchSubsetSumsRunner.Engine engine : BatchSubsetSumsRunner.Engine.values()) {
+            final File output = run(instances, "bitmap", engine.name(), 3);
+            try (DataInputStream in = new DataInputStream(new FileInputStream(output))) {
+                for (InstanceFileReader.Instance instance : instances) {
+                    assertEquals(instance.u, in.readLong());
+                    final byte[] bitmap = new byte[(int) ((instance.u + 7) / 8)];
+                    in.readFully(bitmap);
+                    final ImmutableSet.Builder<Long> sums = ImmutableSet.builder();
+                    for (long i = 0; i < instance.u; i++) {
+                        if ((bitmap[(int) (i >>> 3)] & (1 << (i & 7))) != 0) sums.add(i);
+                    }
+                    assertEquals(naiveSubsetSumsSet(instance.elements, instance.u), sums.build());
+                }
+                assertEquals(-1, in.read());
+            }
+        }
+    }
+
+    @Test
+    public void decisions_are_packed_into_bits() throws Exception {
+        final List<InstanceFileReader.Instance> instances = randomInstances(new Random(3));
+        final File output = run(instances, "decision", "auto", 2);
+        try (DataInputStream in = new DataInputStream(new FileInputStream(output))) {
+            final byte[] bits = new byte[(INSTANCES + 7) / 8];
+            in.readFully(bits);
+            for (int i = 0; i < INSTANCES; i++) {
+                final InstanceFileReader.Instance instance = instances.get(i);
+                final boolean expected = naiveSubsetSumsSet(instance.elements, instance.u).contains(instance.target);
+                assertEquals(expected, (bits[i >>> 3] & (1 << (i & 7))) != 0);
+            }
+            assertEquals(-1, in.read());
+        }
+    }
+
+    @Test
+    public void witnesses_sum_to_target() throws Exception {
+        final List<InstanceFileReader.Instance> instances = randomInstances(new Random(4));
+        final File output = run(instances, "witness", "fast-minkowski", 1);
+        try (DataInputStream in = new DataInputStream(new FileInputStream(output))) {
+            for (InstanceFileReader.Instance instance : instances) {
+                final boolean expected = naiveSubsetSumsSet(instance.elements, instance.u).contains(instance.target);
+                final int size = in.readInt();
+                assertEquals(expected, size >= 0);
+                final ImmutableSet.Builder<Long> witness = ImmutableSet.builder();
+                long sum = 0;
+                for (int i = 0; i < size; i++) {
+                    final long e = in.readLong();
+                    witness.add(e);
+                    sum += e;
+                }
+                assertEquals(Math.max(size, 0), witness.build().size());
+                assertTrue(instance.elements.containsAll(witness.build()));
+                if (expected) assertEquals(instance.target, sum);
+            }
+            assertEquals(-1, in.read());
+        }
+    }
+
+    @Test
+    public void witness_is_found_by_any_engine() throws Exception {
+        final ImmutableList<Long> S = ImmutableList.of(3L, 34L, 4L, 12L, 5L, 2L);
+        for (SubsetSummer summer : ImmutableList.of(new DynamicProgrammingSubsetSummer(),
+                new OptimizedDynamicProgrammingSubsetSummer(), new FastMinkowskiSubsetSummer())) {
+            final Optional<ImmutableList<Long>> witness = SubsetSumWitness.find(summer, S, 9L);
+            assertTrue(witness.isPresent());
+            assertEquals(9L, witness.get().stream().mapToLong(Long::longValue).sum());
+            assertFalse(SubsetSumWitness.find(summer, S, 61L).isPresent());
+        }
+    }
+
+    @Test
+    public void invalid_instances_do_not_stop_the_batch() throws Exception {
+        final File input = folder.newFile();
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(input)))) {
+            InstanceFileReader.writeInstance(out, 10, 5, 2, 3);
+            InstanceFileReader.writeInstance(out, 10, 5, 2, 10); // element out of range
+            InstanceFileReader.writeInstance(out, 10, 6, 3, 3); // duplicate element
+            InstanceFileReader.writeInstance(out, 10, 10, 2, 3); // target out of range, fine for bitmaps
+            InstanceFileReader.writeInstance(out, 10, 5, 1, 4);
+        }
+        for (BatchSubsetSumsRunner.Mode mode : BatchSubsetSumsRunner.Mode.values()) {
+            final File output = folder.newFile();
+            final BatchSubsetSumsRunner.Stats stats = BatchSubsetSumsRunner.run(BatchSubsetSumsRunner.Options.parse(
+                    "--input", input.getPath(), "--output", output.getPath(), "--mode", mode.name(), "--threads", "2"));
+            assertEquals(5, stats.instances);
+            assertEquals(mode == BatchSubsetSumsRunner.Mode.BITMAP ? 2 : 3, stats.invalidInstances);
+            assertEquals(input.length(), stats.inputBytes);
+            try (DataInputStream in = new DataInputStream(new FileInputStream(output))) {
+                switch (mode) {
+                    case BITMAP:
+                        for (long u : new long[]{10, -1, -1, 10, 10}) {
+                            assertEquals(u, in.readLong());
+                            if (u > 0) in.readFully(new byte[2]);
+                        }
+                        break;
+                    case DECISION:
+                        assertEquals(0b10001, in.readByte());
+                        break;
+                    case WITNESS:
+                        for (int size : new int[]{2, -2, -2, -2, 2}) {
+                            assertEquals(size, in.readInt());
+                            for (int i = 0; i < size; i++) in.readLong();
+                        }
+                        break;
+                }
+                assertEquals(-1, in.read());
+            }
+        }
+    }
+
+    @Test
+    public void oversized_instances_do_not_stop_the_batch() throws Exception {
+        final File input = folder.newFile();
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(input)))) {
+            InstanceFileReader.writeInstance(out, 10, 5, 2, 3);
+            InstanceFileReader.writeInstance(out, 1L << 40, 1L << 30, 2, 3); // bound of sums beyond engine limits
+            InstanceFileReader.writeInstance(out, 10, 5, 1, 4);
+        }
+        for (BatchSubsetSumsRunner.Mode mode : BatchSubsetSumsRunner.Mode.values()) {
+            final File output = folder.newFile();
+            final BatchSubsetSumsRunner.Stats stats = BatchSubsetSumsRunner.run(BatchSubsetSumsRunner.Options.parse(
+                    "--input", input.getPath(), "--output", output.getPath(), "--mode", mode.name(), "--threads", "2"));
+            assertEquals(3, stats.instances);
+            assertEquals(1, stats.invalidInstances);
+            try (DataInputStream in = new DataInputStream(new FileInputStream(output))) {
+                switch (mode) {
+                    case BITMAP:
+                        for (long u : new long[]{10, -1, 10}) {
+                            assertEquals(u, in.readLong());
+                            if (u > 0) in.readFully(new byte[2]);
+                        }
+                        break;
+                    case DECISION:
+                        assertEquals(0b101, in.readByte());
+                        break;
+                    case WITNESS:
+                        for (int size : new int[]{2, -2, 2}) {
+                            assertEquals(size, in.readInt());
+                            for (int i = 0; i < size; i++) in.readLong();
+                        }
+                        break;
+                }
+                assertEquals(-1, in.read());
+            }
+        }
+    }
+
+    @Test
+    public void fft_threads_are_restored() throws Exception {
+        final int fftThreads = ConcurrencyUtils.getNumberOfThreads();
+        try {
+            ConcurrencyUtils.setNumberOfThreads(3);
+            run(randomInstances(new Random(5)), "bitmap", "fast-minkowski", 2);
+            assertEquals(3, ConcurrencyUtils.getNumberOfThreads());
+        } finally {
+            ConcurrencyUtils.setNumberOfThreads(fftThreads);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void unknown_option_is_rejected() throws Exception {
+        BatchSubsetSumsRunner.Options.parse("--input", "in", "--output", "out", "--fast", "yes");
+    }
+
+    private File run(List<InstanceFileReader.Instance> instances, String mode, String engine, int threads) throws Exception {
+        final File input = write(instances);
+        final File output = folder.newFile();
+        final BatchSubsetSumsRunner.Stats stats = BatchSubsetSumsRunner.run(BatchSubsetSumsRunner.Options.parse(
+                "--input", input.getPath(), "--output", output.getPath(),
+                "--mode", mode, "--engine", engine, "--threads", String.valueOf(threads)));
+        assertEquals(instances.size(), stats.instances);
+        assertEquals(input.length(), stats.inputBytes);
+        assertEquals(output.length(), stats.outputBytes);
+        return output;
+    }
+
+    private File write(List<InstanceFileReader.Instance> instances) throws Exception {
+        final File file = folder.newFile();
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+            for (InstanceFileReader.Instance instance : instances) {
+                InstanceFileReader.writeInstance(out, instance.u, instance.target, Longs.toArray(instance.elements));
+            }
+        }
+        return file;
+    }
+
+    private static List<InstanceFileReader.Instance> randomInstances(Random random) {
+        final List<InstanceFileReader.Instance> instances = new ArrayList<>(INSTANCES);
+        for (int i = 0; i < INSTANCES; i++) {
+            final long u = 2 + random.nextInt(300);
+            final ImmutableSet<Long> S = randomSetOfFixedSize((int) u, 1 + random.nextInt(8), random);
+            final long target = 1 + random.nextInt((int) u - 1);
+            instances.add(new InstanceFileReader.Instance(0, u, target, S.size(), S));
+        }
+        return instances;
+    }
+}
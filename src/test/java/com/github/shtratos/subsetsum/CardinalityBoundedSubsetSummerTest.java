@@ -0,0 +1,117 @@
+package com.github.shtratos.subsetsum;
+
+import com.google.common.base.Stopwatch;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.ImmutableSortedSet;
+import com.google.common.collect.Iterables;
+import org.junit.Ignore;
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static com.github.shtratos.subsetsum.TestUtils.naiveSubsetSumsSet;
+import static com.github.shtratos.subsetsum.TestUtils.randomSetOfExactSize;
+import static com.github.shtratos.subsetsum.TestUtils.randomSetOfFixedSize;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class CardinalityBoundedSubsetSummerTest {
+
+    @Test
+    public void subsets_are_summed_correctly() throws Exception {
+        final ImmutableSet<Long> S = ImmutableSet.of(1L, 2L, 3L, 4L, 5L);
+        final long u = 100L;
+
+        for (int k = 0; k <= 6; k++) {
+            final SubsetSummer summer = new CardinalityBoundedSubsetSummer(k);
+            assertEquals(naiveSubsetSumsSet(S, u, k), summer.subsetSums(S, u));
+        }
+    }
+
+    @Test
+    public void trivial_cases() throws Exception {
+        final SubsetSummer summer = new CardinalityBoundedSubsetSummer(1);
+
+        assertEquals(ImmutableSet.of(), summer.subsetSums(ImmutableSet.of(), 42L));
+        assertEquals(ImmutableSet.of(7L), summer.subsetSums(ImmutableSet.of(7L), 42L));
+        assertEquals(ImmutableSet.of(2L, 3L), summer.subsetSums(ImmutableSet.of(2L, 3L), 42L));
+        assertEquals(ImmutableSet.of(), new CardinalityBoundedSubsetSummer(0).subsetSums(ImmutableSet.of(2L, 3L), 42L));
+    }
+
+    @Test
+    public void subsets_are_summed_correctly_randomized() throws Exception {
+        for (int i = 0; i < 20; i++) {
+            final ImmutableSet<Long> S = randomSetOfFixedSize(300, 12);
+            final long u = 1000L;
+            final int k = i % 6;
+            assertEquals(naiveSubsetSumsSet(S, u, k), new CardinalityBoundedSubsetSummer(k).subsetSums(S, u));
+        }
+    }
+
+    @Test
+    public void subsets_of_clustered_elements_are_summed_correctly() throws Exception {
+        // narrow span of elements lets k bound the perfect hash
+        final Random random = new Random(3);
+        for (int i = 0; i < 20; i++) {
+            final ImmutableSet<Long> S = ImmutableSet.copyOf(random.longs(12, 300, 310).iterator());
+            final long u = 1000L;
+            final int k = 1 + i % 3;
+            assertEquals(naiveSubsetSumsSet(S, u, k), new CardinalityBoundedSubsetSummer(k).subsetSums(S, u));
+        }
+    }
+
+    @Test
+    public void both_methods_layer_sums_identically() throws Exception {
+        final Random random = new Random(5);
+        for (int i = 0; i < 20; i++) {
+            final ImmutableSortedSet<Long> S = ImmutableSortedSet.copyOf(i % 2 == 0
+                    ? randomSetOfFixedSize(300, 12)
+                    : ImmutableSet.copyOf(random.longs(12, 300, 310).iterator()));
+            final long u = 1000L;
+            final CardinalityBoundedSubsetSummer summer = new CardinalityBoundedSubsetSummer(i % 6);
+            final ImmutableList<ImmutableSet<Long>> layers = summer.combineLayers(S, u);
+            assertEquals(layers, summer.layeredDpSums(S, u));
+            assertEquals(naiveSubsetSumsSet(S, u, i % 6),
+                    ImmutableSet.copyOf(Iterables.concat(layers.subList(1, layers.size()))));
+        }
+    }
+
+    @Test
+    public void bounded_cardinality_is_not_more_expensive_than_unbounded() throws Exception {
+        final ImmutableSet<Long> S = randomSetOfExactSize(50_000, 300, new Random(42));
+        final long u = 50_000L;
+        final long unbounded = new FastMinkowskiSubsetSummer().estimateCost(S, u).estimatedNanos;
+        for (int k : new int[]{2, 5, 10}) {
+            final long bounded = new CardinalityBoundedSubsetSummer(k).estimateCost(S, u).estimatedNanos;
+            assertTrue("k=" + k + ": " + bounded + " > " + unbounded, bounded <= unbounded);
+        }
+    }
+
+    @Test
+    @Ignore("this test is for running experiments only")
+    public void small_k_experiments() throws Exception {
+        final SubsetSummer unbounded = new FastMinkowskiSubsetSummer();
+        final ImmutableSet<Long> S = randomSetOfFixedSize(10_000, 200);
+        final long u = 10_000L;
+        for (int i = 0; i < 5; i++) {
+            final Stopwatch timer = Stopwatch.createStarted();
+            unbounded.subsetSums(S, u);
+            System.out.printf("unbounded\t%.3f%n", timer.elapsed(TimeUnit.NANOSECONDS) / 1_000_000.0);
+            for (int k : new int[]{1, 2, 3, 5, 10, 200}) {
+                final Stopwatch kTimer = Stopwatch.createStarted();
+                new CardinalityBoundedSubsetSummer(k).subsetSums(S, u);
+                System.out.printf("k=%d\t%.3f%n", k, kTimer.elapsed(TimeUnit.NANOSECONDS) / 1_000_000.0);
+            }
+        }
+    }
+
+    @Test
+    public void unbounded_cardinality_matches_fast_algorithm() throws Exception {
+        final ImmutableSet<Long> S = randomSetOfFixedSize(1000, 40);
+        final long u = 3000L;
+        assertEquals(new FastMinkowskiSubsetSummer().subsetSums(S, u),
+                new CardinalityBoundedSubsetSummer(S.size()).subsetSums(S, u));
+    }
+}
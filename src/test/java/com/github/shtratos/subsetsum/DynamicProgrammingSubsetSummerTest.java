@@ -5,12 +5,15 @@ import com.google.common.collect.ImmutableSet;
 import org.junit.Ignore;
 import org.junit.Test;
 
+import java.util.Random;
 import java.util.concurrent.TimeUnit;
 
 import static com.github.shtratos.subsetsum.TestUtils.naiveSubsetSums;
+import static com.github.shtratos.subsetsum.TestUtils.randomSetOfExactSize;
 import static com.github.shtratos.subsetsum.TestUtils.randomSetOfFixedSize;
 import static com.google.common.base.Preconditions.checkState;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 public class DynamicProgrammingSubsetSummerTest {
 
@@ -34,6 +37,55 @@ public class DynamicProgrammingSubsetSummerTest {
         assertEquals(ImmutableSet.of(2L, 3L), summer.subsetSums(ImmutableSet.of(2L, 3L), 5L));
     }
 
+    @Test
+    public void subsets_are_summed_correctly_in_window() throws Exception {
+        final SubsetSummer summer = new DynamicProgrammingSubsetSummer();
+        final ImmutableSet<Long> S = ImmutableSet.of(1L, 2L, 3L, 4L, 5L);
+
+        assertEquals(ImmutableSet.of(12L, 13L, 14L, 15L), summer.subsetSums(S, 12L, 100L));
+        assertEquals(ImmutableSet.of(9L), summer.subsetSums(S, 9L, 10L));
+        assertEquals(ImmutableSet.of(), summer.subsetSums(S, 10L, 10L));
+    }
+
+    @Test
+    public void cost_estimate_covers_state_table() throws Exception {
+        final SubsetSummer summer = new DynamicProgrammingSubsetSummer();
+        final ImmutableSet<Long> S = randomSetOfFixedSize(1000, 100);
+        final long u = 10_000L;
+
+        final CostEstimate estimate = summer.estimateCost(S, u);
+        final long table = u * CostModel.arrayBytes(S.size(), 1) + CostModel.arrayBytes(u, Integer.BYTES);
+        assertTrue(estimate.peakHeapBytes >= table);
+        // besides the table there's only the input and the output
+        assertTrue(estimate.peakHeapBytes <= table + CostModel.setBytes(S.size()) + CostModel.setBytes(u));
+        assertEquals(0L, estimate.peakOffHeapBytes);
+        assertTrue(estimate.estimatedNanos > 0);
+    }
+
+    @Test
+    public void optimized_cost_estimate_models_early_exit() throws Exception {
+        final SubsetSummer summer = new OptimizedDynamicProgrammingSubsetSummer();
+        final ImmutableSet<Long> S = randomSetOfExactSize(100_000, 5000, new Random(42));
+        final long u = 100_000L;
+
+        final CostEstimate estimate = summer.estimateCost(S, u);
+        // almost every sum is reachable, so rows exit long before scanning all elements
+        assertTrue(estimate.estimatedNanos < CostModel.NANOS_PER_DP_CELL * u * S.size() / 10);
+        // the input is counted the same way as by the table based engine
+        assertTrue(estimate.peakHeapBytes >= CostModel.setBytes(S.size()) + CostModel.arrayBytes(u, Integer.BYTES));
+    }
+
+    @Test
+    public void reachable_sums_are_bounded_randomized() throws Exception {
+        final Random random = new Random(7);
+        for (int i = 0; i < 20; i++) {
+            final ImmutableSet<Long> S = randomSetOfFixedSize(1000, 1 + random.nextInt(30), random);
+            final long u = 1000 + random.nextInt(3000);
+            assertTrue(new OptimizedDynamicProgrammingSubsetSummer().subsetSums(S, u).size()
+                    <= OptimizedDynamicProgrammingSubsetSummer.reachableSumsBound(S, u));
+        }
+    }
+
     @Test
     @Ignore("this test is for running experiments only")
     public void subset_sums_comparison_experiments() throws Exception {
@@ -0,0 +1,199 @@
+package com.github.shtratos.subsetsum;
+
+import com.google.common.base.Stopwatch;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.ImmutableSortedSet;
+import org.junit.Ignore;
+import org.junit.Test;
+
+import java.math.BigInteger;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static com.github.shtratos.subsetsum.TestUtils.naiveSubsetSumCounts;
+import static com.github.shtratos.subsetsum.TestUtils.randomSetOfExactSize;
+import static com.github.shtratos.subsetsum.TestUtils.randomSetOfFixedSize;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+public class FastMinkowskiSubsetCounterTest {
+
+    @Test
+    public void subsets_are_counted_correctly() throws Exception {
+        final FastMinkowskiSubsetCounter counter = new FastMinkowskiSubsetCounter();
+        final ImmutableSet<Long> S = ImmutableSet.of(1L, 2L, 3L, 4L, 5L);
+        final long u = 100L;
+
+        assertArrayEquals(naiveSubsetSumCounts(S, u, FastMinkowskiSubsetCounter.DEFAULT_MODULUS),
+                counter.subsetSumCounts(S, u));
+    }
+
+    @Test
+    public void trivial_cases() throws Exception {
+        final FastMinkowskiSubsetCounter counter = new FastMinkowskiSubsetCounter();
+
+        assertArrayEquals(new long[]{1, 0, 0}, counter.subsetSumCounts(ImmutableSet.of(), 3L));
+        assertArrayEquals(new long[]{1, 0, 1, 0}, counter.subsetSumCounts(ImmutableSet.of(2L), 4L));
+        assertArrayEquals(new long[]{1, 1, 1, 2, 1, 1, 1}, counter.subsetSumCounts(ImmutableSet.of(1L, 2L, 3L), 7L));
+        assertArrayEquals(new long[]{1, 1, 1, 2}, counter.subsetSumCounts(ImmutableSet.of(1L, 2L, 3L), 4L));
+    }
+
+    @Test
+    public void counts_are_reduced_modulo_prime() throws Exception {
+        final long p = 7L;
+        final FastMinkowskiSubsetCounter counter = new FastMinkowskiSubsetCounter(p);
+        for (int i = 0; i < 20; i++) {
+            final ImmutableSet<Long> S = randomSetOfFixedSize(200, 14);
+            final long u = 500L;
+            assertArrayEquals(naiveSubsetSumCounts(S, u, p), counter.subsetSumCounts(S, u));
+        }
+    }
+
+    @Test
+    public void counts_are_exact_for_large_prime() throws Exception {
+        final long p = 2_147_483_647L;
+        final FastMinkowskiSubsetCounter counter = new FastMinkowskiSubsetCounter(p);
+        for (int i = 0; i < 20; i++) {
+            final ImmutableSet<Long> S = randomSetOfFixedSize(100, 16);
+            final long u = 1000L;
+            assertArrayEquals(naiveSubsetSumCounts(S, u, p), counter.subsetSumCounts(S, u));
+        }
+    }
+
+    @Test
+    public void combine_tree_counts_correctly_randomized() throws Exception {
+        final long p = 1_000_003L;
+        final FastMinkowskiSubsetCounter counter = new FastMinkowskiSubsetCounter(p);
+        final Random random = new Random(7);
+        for (int i = 0; i < 20; i++) {
+            final long u = random.nextInt(5000) + 2;
+            final ImmutableSet<Long> S = randomSetOfFixedSize((int) u, random.nextInt(14) + 1, random);
+            assertArrayEquals(naiveSubsetSumCounts(S, u, p), counter.combineCounts(ImmutableSortedSet.copyOf(S), u));
+        }
+    }
+
+    @Test
+    public void combine_tree_counts_correctly_on_dense_inputs() throws Exception {
+        // large enough for every kind of merge to be used, including hashed ones
+        final FastMinkowskiSubsetCounter counter = new FastMinkowskiSubsetCounter();
+        final ImmutableSet<Long> S = randomSetOfExactSize(12_000, 3000, new Random(42));
+        assertArrayEquals(dynamicProgrammingCounts(S, 12_000, FastMinkowskiSubsetCounter.DEFAULT_MODULUS),
+                counter.combineCounts(ImmutableSortedSet.copyOf(S), 12_000L));
+    }
+
+    @Test
+    public void exponential_counts_correctly_randomized() throws Exception {
+        final Random random = new Random(9);
+        for (int i = 0; i < 20; i++) {
+            final long u = random.nextInt(5000) + 2;
+            // smallest allowed modulus makes every reduction count
+            final long p = BigInteger.valueOf(u - 1).nextProbablePrime().longValue();
+            final ImmutableSet<Long> S = randomSetOfFixedSize((int) u, random.nextInt(14) + 1, random);
+            assertArrayEquals(naiveSubsetSumCounts(S, u, p),
+                    new FastMinkowskiSubsetCounter(p).exponentialCounts(ImmutableSortedSet.copyOf(S), u));
+        }
+    }
+
+    @Test
+    public void exponential_counts_correctly_on_dense_inputs() throws Exception {
+        final FastMinkowskiSubsetCounter counter = new FastMinkowskiSubsetCounter();
+        final ImmutableSet<Long> S = randomSetOfExactSize(12_000, 3000, new Random(42));
+        assertArrayEquals(dynamicProgrammingCounts(S, 12_000, FastMinkowskiSubsetCounter.DEFAULT_MODULUS),
+                counter.exponentialCounts(ImmutableSortedSet.copyOf(S), 12_000L));
+    }
+
+    @Test
+    public void exponential_counts_are_chosen_for_dense_inputs() throws Exception {
+        final ImmutableSet<Long> S = randomSetOfExactSize(100_000, 50_000, new Random(42));
+        final double dpNanos = CostModel.NANOS_PER_COUNT_DP_CELL * S.size() * 100_000;
+        assertTrue(new FastMinkowskiSubsetCounter().estimateCost(S, 100_000L).estimatedNanos < dpNanos / 4);
+    }
+
+    @Test
+    public void transforms_beyond_limit_are_not_planned() throws Exception {
+        // u above 2^23: the exponent would need a transform of 2^24
+        final ImmutableSet<Long> S = randomSetOfExactSize(9_000_000, 20_000, new Random(42));
+        final long dpNanos = (long) (CostModel.NANOS_PER_COUNT_DP_CELL * S.size() * 9_000_000L);
+        assertEquals(dpNanos, new FastMinkowskiSubsetCounter().estimateCost(S, 9_000_000L).estimatedNanos);
+
+        // dense counts of length above 2^22 would be convolved with a transform of 2^24
+        final long length = (1 << 22) + 1;
+        assertNotEquals(FastMinkowskiSubsetCounter.Merge.CONVOLUTION,
+                FastMinkowskiSubsetCounter.cheapestMerge(length, length, 1_000_000, length, length, length));
+        assertEquals(FastMinkowskiSubsetCounter.Merge.CONVOLUTION,
+                FastMinkowskiSubsetCounter.cheapestMerge(length, length, 1_000_000, length, length / 2, length / 2));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void exponential_counts_reject_transforms_beyond_limit() throws Exception {
+        new FastMinkowskiSubsetCounter().exponentialCounts(ImmutableSortedSet.of(1L, 2L), (1L << 23) + 1);
+    }
+
+    @Test
+    public void cost_estimate_covers_output() throws Exception {
+        final FastMinkowskiSubsetCounter counter = new FastMinkowskiSubsetCounter();
+        final ImmutableSet<Long> S = randomSetOfExactSize(20_000, 1000, new Random(42));
+        assertTrue(counter.estimateCost(S, 20_000L).peakHeapBytes >= 20_000L * Long.BYTES);
+    }
+
+    @Test
+    public void combine_tree_is_chosen_for_clustered_elements() throws Exception {
+        // any subset summing below u has at most 2 elements, so hashed count vectors are short
+        final ImmutableSet<Long> S = clusteredSet(2000, 333_334, 2000, new Random(42));
+        final double dpNanos = CostModel.NANOS_PER_COUNT_DP_CELL * S.size() * 1_000_000;
+        assertTrue(new FastMinkowskiSubsetCounter().estimateCost(S, 1_000_000L).estimatedNanos < dpNanos / 4);
+    }
+
+    @Test
+    @Ignore("this test is for running experiments only")
+    public void subset_counts_experiments() throws Exception {
+        final FastMinkowskiSubsetCounter counter = new FastMinkowskiSubsetCounter();
+        // n, u, lowest element, span of elements
+        for (int[] shape : new int[][]{{500, 50_000, 1, 49_999}, {5_000, 50_000, 1, 49_999}, {25_000, 50_000, 1, 49_999},
+                {15, 10_000_000, 1, 9_999_999},
+                {200, 1_000_000, 1, 999_999}, {2_000, 1_000_000, 100_000, 2_000}, {2_000, 1_000_000, 333_334, 2_000}}) {
+            final ImmutableSet<Long> S = clusteredSet(shape[0], shape[2], shape[3], new Random(42));
+            for (int i = 0; i < 3; i++) {
+                final Stopwatch dpTimer = Stopwatch.createStarted();
+                final long[] expected = dynamicProgrammingCounts(S, shape[1], FastMinkowskiSubsetCounter.DEFAULT_MODULUS);
+                final long dpNanos = dpTimer.elapsed(TimeUnit.NANOSECONDS);
+                final Stopwatch timer = Stopwatch.createStarted();
+                final long[] counts = counter.subsetSumCounts(S, shape[1]);
+                System.out.printf("n=%d\tu=%d\tS in [%d..%d]\tdp=%.1f\tcounter=%.1f\testimate=%.1f%n",
+                        shape[0], shape[1], shape[2], shape[2] + shape[3] - 1, dpNanos / 1e6,
+                        timer.elapsed(TimeUnit.NANOSECONDS) / 1e6, counter.estimateCost(S, shape[1]).estimatedNanos / 1e6);
+                assertArrayEquals(expected, counts);
+            }
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void modulus_must_be_prime() throws Exception {
+        new FastMinkowskiSubsetCounter(1_000_000L);
+    }
+
+    /**
+     * Classic in-place {@code O(n * u)} counting.
+     */
+    private static long[] dynamicProgrammingCounts(ImmutableSet<Long> S, int u, long p) {
+        final long[] counts = new long[u];
+        counts[0] = 1;
+        for (long s : S) {
+            for (int i = u - 1; i >= s; i--) {
+                final long c = counts[i] + counts[i - (int) s] - p;
+                counts[i] = c + (c >> 63 & p);
+            }
+        }
+        return counts;
+    }
+
+    private static ImmutableSet<Long> clusteredSet(int n, long lowest, int span, Random random) {
+        final ImmutableSet.Builder<Long> S = ImmutableSet.builder();
+        for (long x : random.longs(0, span).distinct().limit(n).toArray()) {
+            S.add(lowest + x);
+        }
+        return S.build();
+    }
+}
@@ -19,12 +19,14 @@ import static com.github.shtratos.subsetsum.TestUtils.lengthOf;
 import static com.github.shtratos.subsetsum.TestUtils.maxOf;
 import static com.github.shtratos.subsetsum.TestUtils.naiveSubsetSums;
 import static com.github.shtratos.subsetsum.TestUtils.randomSet;
+import static com.github.shtratos.subsetsum.TestUtils.randomSetOfExactSize;
 import static com.github.shtratos.subsetsum.TestUtils.randomSetOfFixedSize;
 import static com.google.common.base.Preconditions.checkState;
 import static com.google.common.collect.Iterables.concat;
 import static java.util.stream.Collectors.collectingAndThen;
 import static java.util.stream.Collectors.toSet;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 public class FastMinkowskiSubsetSummerTest {
 
@@ -48,6 +50,54 @@ public class FastMinkowskiSubsetSummerTest {
         assertEquals(ImmutableSet.of(2L, 3L), summer.subsetSums(ImmutableSet.of(2L, 3L), 5L));
     }
 
+    @Test
+    public void subsets_are_summed_correctly_in_window() throws Exception {
+        final SubsetSummer summer = new FastMinkowskiSubsetSummer();
+        for (int i = 0; i < 50; i++) {
+            final ImmutableSet<Long> S = randomSetOfFixedSize(100, 12);
+            final long u = 400L;
+            final long lo = new Random().nextInt((int) u + 1);
+            final ImmutableSet<Long> expected = FluentIterable.from(naiveSubsetSums(S, u).sums).filter(e -> e >= lo).toSet();
+            assertEquals(expected, summer.subsetSums(S, lo, u));
+        }
+        assertEquals(ImmutableSet.of(), summer.subsetSums(ImmutableSet.of(2L, 3L), 42L, 42L));
+        assertEquals(ImmutableSet.of(5L), summer.subsetSums(ImmutableSet.of(2L, 3L), 4L, 42L));
+    }
+
+    @Test
+    public void cost_estimate_grows_with_target() throws Exception {
+        final SubsetSummer summer = new FastMinkowskiSubsetSummer();
+        final ImmutableSet<Long> S = randomSetOfFixedSize(1000, 100);
+
+        final CostEstimate small = summer.estimateCost(S, 1_000L);
+        final CostEstimate large = summer.estimateCost(S, 100_000L);
+        assertTrue(small.peakHeapBytes > 0);
+        assertTrue(large.peakHeapBytes > small.peakHeapBytes);
+        assertTrue(large.estimatedNanos > small.estimatedNanos);
+    }
+
+    @Test
+    public void cost_estimate_is_close_to_measured_time() throws Exception {
+        final SubsetSummer summer = new FastMinkowskiSubsetSummer();
+        final ImmutableSet<Long> S = randomSetOfExactSize(20_000, 200, new Random(42));
+        summer.subsetSums(S, 20_000L); // warm up
+        long nanos = Long.MAX_VALUE;
+        for (int i = 0; i < 3; i++) {
+            final Stopwatch timer = Stopwatch.createStarted();
+            summer.subsetSums(S, 20_000L);
+            nanos = Math.min(nanos, timer.elapsed(TimeUnit.NANOSECONDS));
+        }
+        final long estimate = summer.estimateCost(S, 20_000L).estimatedNanos;
+        assertTrue("estimated " + estimate + " ns, measured " + nanos + " ns", estimate > nanos / 4 && estimate < nanos * 4);
+    }
+
+    @Test
+    public void cost_estimate_of_empty_input_is_trivial() throws Exception {
+        final CostEstimate estimate = new FastMinkowskiSubsetSummer().estimateCost(ImmutableSet.of(), 42L);
+        assertEquals(0L, estimate.estimatedNanos);
+        assertEquals(0L, estimate.peakOffHeapBytes);
+    }
+
     @Test
     @Ignore("this test is for running experiments only")
     public void subset_sums_experiments() throws Exception {
@@ -1,9 +1,18 @@
 package com.github.shtratos.subsetsum;
 
+import com.google.common.collect.FluentIterable;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
 import org.junit.Test;
 
+import java.util.Random;
+
+import static com.github.shtratos.subsetsum.MinkowskiSumUtils.cyclicMinkowskiSum;
+import static com.github.shtratos.subsetsum.MinkowskiSumUtils.layeredMinkowskiSum;
 import static com.github.shtratos.subsetsum.MinkowskiSumUtils.minkowskiSum;
+import static com.github.shtratos.subsetsum.MinkowskiSumUtils.pairwiseLayeredMinkowskiSum;
+import static java.util.stream.Collectors.collectingAndThen;
+import static java.util.stream.Collectors.toSet;
 import static org.junit.Assert.assertEquals;
 
 public class MinkowskiSumUtilsTest {
@@ -27,6 +36,89 @@ public class MinkowskiSumUtilsTest {
         }
     }
 
+    @Test
+    public void cyclic_minkowski_sum() throws Exception {
+        assertEquals(ImmutableSet.of(2L, 0L),
+                cyclicMinkowskiSum(ImmutableSet.of(1L, 2L), ImmutableSet.of(1L), 3L));
+        assertEquals(ImmutableSet.of(0L, 1L, 2L, 3L),
+                cyclicMinkowskiSum(ImmutableSet.of(1L, 2L), ImmutableSet.of(1L, 3L), 4L));
+        assertEquals(ImmutableSet.of(0L),
+                cyclicMinkowskiSum(ImmutableSet.of(0L), ImmutableSet.of(0L), 1L));
+
+        for (int i = 0; i < 100; i++) {
+            final long m = new Random().nextInt(1000) + 1;
+            final ImmutableSet<Long> A = FluentIterable.from(TestUtils.randomSet(1000, 50)).transform(e -> e % m).toSet();
+            final ImmutableSet<Long> B = FluentIterable.from(TestUtils.randomSet(1000, 50)).transform(e -> e % m).toSet();
+            final ImmutableSet<Long> expected = FluentIterable.from(naiveMinkowskiSum(A, B)).transform(e -> e % m).toSet();
+            assertEquals(expected, cyclicMinkowskiSum(A, B, m));
+        }
+    }
+
+    @Test
+    public void minkowski_sum_in_window() throws Exception {
+        assertEquals(ImmutableSet.of(6L, 7L),
+                minkowskiSum(ImmutableSet.of(1L, 2L, 4L), ImmutableSet.of(3L, 4L), 6L, 8L));
+        assertEquals(ImmutableSet.of(),
+                minkowskiSum(ImmutableSet.of(1L, 2L, 4L), ImmutableSet.of(3L, 4L), 9L, 20L));
+
+        for (int i = 0; i < 100; i++) {
+            final ImmutableSet<Long> A = TestUtils.randomSet(1000, 100);
+            final ImmutableSet<Long> B = TestUtils.randomSet(1000, 10);
+            final long lo = new Random().nextInt(2000);
+            final long hi = lo + new Random().nextInt(1000);
+            final ImmutableSet<Long> expected = naiveMinkowskiSum(A, B).stream()
+                    .filter(e -> e >= lo && e < hi)
+                    .collect(collectingAndThen(toSet(), ImmutableSet::copyOf));
+            assertEquals(expected, minkowskiSum(A, B, lo, hi));
+        }
+    }
+
+    @Test
+    public void layered_minkowski_sum() throws Exception {
+        final ImmutableList<ImmutableSet<Long>> A = ImmutableList.of(ImmutableSet.of(0L), ImmutableSet.of(1L, 2L), ImmutableSet.of(3L));
+        final ImmutableList<ImmutableSet<Long>> B = ImmutableList.of(ImmutableSet.of(0L), ImmutableSet.of(4L));
+
+        assertEquals(ImmutableList.of(ImmutableSet.of(0L), ImmutableSet.of(1L, 2L, 4L), ImmutableSet.of(3L, 5L, 6L), ImmutableSet.of(7L)),
+                layeredMinkowskiSum(A, B, 3, 100L));
+        assertEquals(ImmutableList.of(ImmutableSet.of(0L), ImmutableSet.of(1L, 2L, 4L)),
+                layeredMinkowskiSum(A, B, 1, 100L));
+        assertEquals(ImmutableList.of(ImmutableSet.of(0L), ImmutableSet.of(1L, 2L, 4L), ImmutableSet.of(3L, 5L)),
+                layeredMinkowskiSum(A, B, 3, 6L));
+    }
+
+    @Test
+    public void layered_minkowski_sum_variants_agree() throws Exception {
+        final Random random = new Random(5);
+        for (int i = 0; i < 20; i++) {
+            // sums of elements from [d..d+l-1]
+            final long d = 1000, l = 1 + random.nextInt(10), u = 10_000;
+            final ImmutableList<ImmutableSet<Long>> A = randomLayers(d, l, u, random);
+            final ImmutableList<ImmutableSet<Long>> B = randomLayers(d, l, u, random);
+            final int k = random.nextInt(12);
+            // at most 9 elements sum below u, which bounds the hash
+            final long maxL = 9 * l;
+
+            final ImmutableList<ImmutableSet<Long>> expected = layeredMinkowskiSum(A, B, k, u);
+            assertEquals(expected, pairwiseLayeredMinkowskiSum(A, B, k, u));
+            assertEquals(expected, layeredMinkowskiSum(A, B, x -> FastMinkowskiSubsetSummer.perfectH(x, d, maxL),
+                    x -> FastMinkowskiSubsetSummer.inverseH(x, d, maxL), 2 * maxL, k, u));
+        }
+    }
+
+    private static ImmutableList<ImmutableSet<Long>> randomLayers(long d, long l, long u, Random random) {
+        final ImmutableList.Builder<ImmutableSet<Long>> layers = ImmutableList.builder();
+        layers.add(ImmutableSet.of(0L));
+        final int cardinality = random.nextInt(5);
+        for (int c = 1; c <= cardinality; c++) {
+            final ImmutableSet.Builder<Long> layer = ImmutableSet.builder();
+            for (int j = 0; j < 5; j++) {
+                layer.add(c * d + random.nextInt((int) (c * (l - 1) + 1)));
+            }
+            layers.add(layer.build());
+        }
+        return layers.build();
+    }
+
     private void verifyMinkowskiSum(ImmutableSet<Long> A, ImmutableSet<Long> B) {
         assertEquals(naiveMinkowskiSum(A, B), minkowskiSum(A, B));
     }
@@ -0,0 +1,69 @@
+package com.github.shtratos.subsetsum;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static com.github.shtratos.subsetsum.ModularConvolutionUtils.convolution;
+import static com.github.shtratos.subsetsum.ModularConvolutionUtils.cyclicConvolution;
+import static org.junit.Assert.assertArrayEquals;
+
+public class ModularConvolutionUtilsTest {
+
+    @Test
+    public void convolution_of_small_vectors() throws Exception {
+        assertArrayEquals(new long[]{3}, convolution(new long[]{1}, new long[]{3}, 10, 7L));
+        assertArrayEquals(new long[]{1, 2, 1}, convolution(new long[]{1, 1}, new long[]{1, 1}, 10, 7L));
+        assertArrayEquals(new long[]{1, 2}, convolution(new long[]{1, 1}, new long[]{1, 1}, 2, 7L));
+        assertArrayEquals(new long[]{4, 1, 3}, convolution(new long[]{2, 3}, new long[]{2, 1}, 10, 7L));
+    }
+
+    @Test
+    public void convolution_randomized_test() throws Exception {
+        final Random random = new Random();
+        final long[] moduli = {2L, 7L, 1_000_000_007L, 2_147_483_647L};
+        for (int i = 0; i < 100; i++) {
+            final long p = moduli[random.nextInt(moduli.length)];
+            final long[] a = randomVector(random, random.nextInt(300) + 1, p);
+            final long[] b = randomVector(random, random.nextInt(300) + 1, p);
+            final int limit = random.nextInt(a.length + b.length) + 1;
+            assertArrayEquals(naiveConvolution(a, b, limit, p), convolution(a, b, limit, p));
+        }
+    }
+
+    @Test
+    public void cyclic_convolution_wraps_around() throws Exception {
+        final Random random = new Random(11);
+        final long[] moduli = {2L, 7L, 1_000_000_007L, 2_147_483_647L};
+        for (int i = 0; i < 50; i++) {
+            final long p = moduli[random.nextInt(moduli.length)];
+            final int size = 1 << random.nextInt(10);
+            final long[] a = randomVector(random, random.nextInt(size) + 1, p);
+            final long[] b = randomVector(random, random.nextInt(size) + 1, p);
+            final long[] full = naiveConvolution(a, b, a.length + b.length - 1, p);
+            final long[] expected = new long[size];
+            for (int j = 0; j < full.length; j++) {
+                expected[j % size] = (expected[j % size] + full[j]) % p;
+            }
+            assertArrayEquals(expected, cyclicConvolution(a, b, size, p));
+        }
+    }
+
+    private static long[] randomVector(Random random, int length, long p) {
+        final long[] v = new long[length];
+        for (int i = 0; i < length; i++) {
+            v[i] = (random.nextLong() & Long.MAX_VALUE) % p;
+        }
+        return v;
+    }
+
+    private static long[] naiveConvolution(long[] a, long[] b, int limit, long p) {
+        final long[] c = new long[Math.min(limit, a.length + b.length - 1)];
+        for (int i = 0; i < a.length; i++) {
+            for (int j = 0; j < b.length && i + j < c.length; j++) {
+                c[i + j] = (c[i + j] + a[i] * b[j] % p) % p;
+            }
+        }
+        return c;
+    }
+}
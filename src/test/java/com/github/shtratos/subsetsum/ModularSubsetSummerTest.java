@@ -0,0 +1,52 @@
+package com.github.shtratos.subsetsum;
+
+import com.google.common.collect.FluentIterable;
+import com.google.common.collect.ImmutableSet;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static com.github.shtratos.subsetsum.TestUtils.naiveSubsetSumsSet;
+import static com.github.shtratos.subsetsum.TestUtils.randomSetOfFixedSize;
+import static org.junit.Assert.assertEquals;
+
+public class ModularSubsetSummerTest {
+
+    @Test
+    public void subsets_are_summed_correctly() throws Exception {
+        final ModularSubsetSummer summer = new ModularSubsetSummer();
+        final ImmutableSet<Long> S = ImmutableSet.of(1L, 2L, 3L, 4L, 5L);
+
+        assertEquals(naiveSubsetSumsModulo(S, 7L), summer.subsetSums(S, 7L));
+        assertEquals(naiveSubsetSumsModulo(S, 100L), summer.subsetSums(S, 100L));
+    }
+
+    @Test
+    public void trivial_cases() throws Exception {
+        final ModularSubsetSummer summer = new ModularSubsetSummer();
+
+        assertEquals(ImmutableSet.of(), summer.subsetSums(ImmutableSet.of(), 42L));
+        assertEquals(ImmutableSet.of(7L), summer.subsetSums(ImmutableSet.of(49L), 42L));
+        assertEquals(ImmutableSet.of(0L), summer.subsetSums(ImmutableSet.of(5L, 10L), 5L));
+        assertEquals(ImmutableSet.of(0L, 1L), summer.subsetSums(ImmutableSet.of(3L, 5L), 2L));
+    }
+
+    @Test
+    public void subsets_are_summed_correctly_randomized() throws Exception {
+        final ModularSubsetSummer summer = new ModularSubsetSummer();
+        for (int i = 0; i < 50; i++) {
+            final ImmutableSet<Long> S = randomSetOfFixedSize(1_000_000, 14);
+            final long m = new Random().nextInt(5000) + 1;
+            assertEquals(naiveSubsetSumsModulo(S, m), summer.subsetSums(S, m));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void modulus_above_fft_limit_is_rejected() throws Exception {
+        new ModularSubsetSummer().subsetSums(ImmutableSet.of(1L, 2L), 1L << 29);
+    }
+
+    private static ImmutableSet<Long> naiveSubsetSumsModulo(ImmutableSet<Long> S, long m) {
+        return FluentIterable.from(naiveSubsetSumsSet(S, Long.MAX_VALUE)).transform(e -> e % m).toSet();
+    }
+}
@@ -0,0 +1,178 @@
+package com.github.shtratos.subsetsum;
+
+import com.google.common.base.Joiner;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.ImmutableSortedSet;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.Set;
+import java.util.function.BiConsumer;
+
+import static com.github.shtratos.subsetsum.TestUtils.randomSetOfExactSize;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Checks empirical running time exponents of each engine against its claimed complexity bound.
+ * <p>
+ * Each engine is run over geometric sweeps of {@code n} (with fixed {@code u}) and {@code u} (with fixed {@code n})
+ * on seeded inputs, exponents are fitted by least squares in log-log scale. Sweeps are sized so that every point
+ * takes at least about 100 ms, and each point is the median of several runs, so that timer and GC noise
+ * do not dominate the fit.
+ * FFT based engines have their polylog factor in {@code u} divided out before fitting.
+ * Every fit is appended as a JSON line to {@code scaling.output} (default {@code build/scaling-results.jsonl}).
+ * <p>
+ * The suite takes minutes, so it only runs with {@code -Dscaling.suite}.
+ * Allowed excess over the bound is set by {@code scaling.tolerance} (default 0.25).
+ */
+public class ScalingRegressionTest {
+
+    private static final long SEED = 42L;
+    private static final int REPETITIONS = 7;
+    private static final double TOLERANCE = Double.parseDouble(System.getProperty("scaling.tolerance", "0.25"));
+    private static final Path OUTPUT = Paths.get(System.getProperty("scaling.output", "build/scaling-results.jsonl"));
+
+    @Before
+    public void setUp() throws Exception {
+        assumeTrue("scaling suite is disabled, run with -Dscaling.suite", System.getProperty("scaling.suite") != null);
+    }
+
+    @Test
+    public void fast_minkowski_scales_as_sqrt_n_times_u() throws Exception {
+        final SubsetSummer summer = new FastMinkowskiSubsetSummer();
+        verifyExponentInN("FastMinkowskiSubsetSummer", summer::subsetSums, ImmutableList.of(250, 500, 1000, 2000, 4000), 20_000, 0.5, 0);
+        verifyExponentInU("FastMinkowskiSubsetSummer", summer::subsetSums, 200, ImmutableList.of(5_000, 10_000, 20_000, 40_000), 1.0, 1);
+    }
+
+    @Test
+    public void dynamic_programming_scales_as_n_times_u() throws Exception {
+        final SubsetSummer summer = new DynamicProgrammingSubsetSummer();
+        // the table takes u * n bytes, so sweeps are short to keep it within a few hundred MB
+        verifyExponentInN("DynamicProgrammingSubsetSummer", summer::subsetSums, ImmutableList.of(2000, 4000, 8000), 50_000, 1.0, 0);
+        verifyExponentInU("DynamicProgrammingSubsetSummer", summer::subsetSums, 2000, ImmutableList.of(50_000, 100_000, 200_000), 1.0, 0);
+    }
+
+    @Test
+    public void optimized_dynamic_programming_scales_as_n_times_u() throws Exception {
+        final SubsetSummer summer = new OptimizedDynamicProgrammingSubsetSummer();
+        verifyExponentInN("OptimizedDynamicProgrammingSubsetSummer", summer::subsetSums, ImmutableList.of(500, 1000, 2000, 4000), 1_000_000, 1.0, 0);
+        verifyExponentInU("OptimizedDynamicProgrammingSubsetSummer", summer::subsetSums, 500, ImmutableList.of(500_000, 1_000_000, 2_000_000, 4_000_000), 1.0, 0);
+    }
+
+    @Test
+    public void cardinality_bounded_scales_as_sqrt_n_times_u() throws Exception {
+        // the combine tree is swept on its own, the engine switches to the layered dynamic programming when cheaper
+        final CardinalityBoundedSubsetSummer summer = new CardinalityBoundedSubsetSummer(3);
+        final BiConsumer<Set<Long>, Long> tree = (S, u) -> summer.combineLayers(ImmutableSortedSet.copyOf(S), u);
+        verifyExponentInN("CardinalityBoundedSubsetSummer", tree, ImmutableList.of(250, 500, 1000, 2000, 4000), 20_000, 0.5, 0);
+        verifyExponentInU("CardinalityBoundedSubsetSummer", tree, 250, ImmutableList.of(10_000, 20_000, 40_000, 80_000), 1.0, 1);
+    }
+
+    @Test
+    public void subset_counter_scales_as_sqrt_n_times_u() throws Exception {
+        final FastMinkowskiSubsetCounter counter = new FastMinkowskiSubsetCounter();
+        verifyExponentInN("FastMinkowskiSubsetCounter", counter::subsetSumCounts, ImmutableList.of(2000, 4000, 8000, 16_000, 32_000), 100_000, 0.5, 0);
+        verifyExponentInU("FastMinkowskiSubsetCounter", counter::subsetSumCounts, 2000, ImmutableList.of(50_000, 100_000, 200_000, 400_000), 1.0, 1);
+    }
+
+    @Test
+    public void modular_scales_as_n_times_m() throws Exception {
+        final ModularSubsetSummer summer = new ModularSubsetSummer();
+        verifyExponentInN("ModularSubsetSummer", summer::subsetSums, ImmutableList.of(250, 500, 1000, 2000), 20_000, 1.0, 0);
+        verifyExponentInU("ModularSubsetSummer", summer::subsetSums, 500, ImmutableList.of(10_000, 20_000, 40_000, 80_000), 1.0, 1);
+    }
+
+    private static void verifyExponentInN(String engine, BiConsumer<Set<Long>, Long> solver,
+                                          List<Integer> ns, int u, double bound, int logDegree) throws IOException {
+        final List<double[]> points = new ArrayList<>(ns.size());
+        for (int n : ns) {
+            points.add(new double[]{n, measureNanos(solver, n, u)});
+        }
+        verifyExponent(engine, "n", "u=" + u, points, bound, logDegree);
+    }
+
+    private static void verifyExponentInU(String engine, BiConsumer<Set<Long>, Long> solver,
+                                          int n, List<Integer> us, double bound, int logDegree) throws IOException {
+        final List<double[]> points = new ArrayList<>(us.size());
+        for (int u : us) {
+            points.add(new double[]{u, measureNanos(solver, n, u)});
+        }
+        verifyExponent(engine, "u", "n=" + n, points, bound, logDegree);
+    }
+
+    /**
+     * @return median time of several runs on the same seeded input, after a warm-up run
+     */
+    private static double measureNanos(BiConsumer<Set<Long>, Long> solver, int n, long u) {
+        final ImmutableSet<Long> S = randomSetOfExactSize((int) u, n, new Random(SEED));
+        solver.accept(S, u);
+        final long[] nanos = new long[REPETITIONS];
+        for (int i = 0; i < REPETITIONS; i++) {
+            // otherwise garbage of the previous run, e.g. a dynamic programming table, is collected during this one
+            System.gc();
+            final long start = System.nanoTime();
+            solver.accept(S, u);
+            nanos[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(nanos);
+        return nanos[REPETITIONS / 2];
+    }
+
+    private static void verifyExponent(String engine, String parameter, String fixed,
+                                       List<double[]> points, double bound, int logDegree) throws IOException {
+        final double exponent = fitExponent(points, logDegree);
+        record(engine, parameter, fixed, points, exponent, bound, logDegree);
+        assertTrue(String.format(Locale.ROOT, "%s: exponent in %s (%s) is %.3f, expected at most %.3f + %.3f",
+                engine, parameter, fixed, exponent, bound, TOLERANCE),
+                exponent <= bound + TOLERANCE);
+    }
+
+    /**
+     * Least squares slope of {@code log(time / log^logDegree(parameter))} over {@code log(parameter)},
+     * i.e. polylog factors claimed by the bound are divided out before fitting.
+     */
+    static double fitExponent(List<double[]> points, int logDegree) {
+        double sx = 0, sy = 0, sxx = 0, sxy = 0;
+        for (double[] p : points) {
+            final double x = Math.log(p[0]);
+            final double y = Math.log(p[1]) - logDegree * Math.log(x);
+            sx += x;
+            sy += y;
+            sxx += x * x;
+            sxy += x * y;
+        }
+        final int m = points.size();
+        return (m * sxy - sx * sy) / (m * sxx - sx * sx);
+    }
+
+    private static void record(String engine, String parameter, String fixed,
+                               List<double[]> points, double exponent, double bound, int logDegree) throws IOException {
+        final List<String> jsonPoints = new ArrayList<>(points.size());
+        for (double[] p : points) {
+            jsonPoints.add(String.format(Locale.ROOT, "[%d,%d]", (long) p[0], (long) p[1]));
+        }
+        final String line = String.format(Locale.ROOT,
+                "{\"timestamp\":\"%s\",\"engine\":\"%s\",\"parameter\":\"%s\",\"fixed\":\"%s\"," +
+                        "\"logDegree\":%d,\"exponent\":%.4f,\"bound\":%.4f,\"tolerance\":%.4f,\"points\":[%s]}%n",
+                Instant.now(), engine, parameter, fixed, logDegree, exponent, bound, TOLERANCE, Joiner.on(',').join(jsonPoints));
+        if (OUTPUT.getParent() != null) {
+            Files.createDirectories(OUTPUT.getParent());
+        }
+        Files.write(OUTPUT, line.getBytes(StandardCharsets.UTF_8), StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        System.out.print(line);
+    }
+}
@@ -6,7 +6,9 @@ import com.google.common.collect.Ordering;
 import com.google.common.collect.Range;
 import com.google.common.collect.Sets;
 
+import java.util.LinkedHashSet;
 import java.util.Random;
+import java.util.Set;
 
 import static com.google.common.base.Preconditions.checkState;
 
@@ -21,7 +23,10 @@ final class TestUtils {
     }
 
     static ImmutableSet<Long> randomSetOfFixedSize(int valueLimit, int size) {
-        final Random random = new Random();
+        return randomSetOfFixedSize(valueLimit, size, new Random());
+    }
+
+    static ImmutableSet<Long> randomSetOfFixedSize(int valueLimit, int size, Random random) {
         ImmutableSet.Builder<Long> r = ImmutableSet.<Long>builder();
         for (int i = 0; i < size; i++) {
             final long v = random.nextInt(valueLimit - 1) + 1;
@@ -31,6 +36,18 @@ final class TestUtils {
         return r.build();
     }
 
+    /**
+     * Unlike {@link #randomSetOfFixedSize(int, int, Random)} never returns less than {@code size} elements.
+     */
+    static ImmutableSet<Long> randomSetOfExactSize(int valueLimit, int size, Random random) {
+        checkState(size < valueLimit, "cannot pick %s distinct values below %s", size, valueLimit);
+        final Set<Long> r = new LinkedHashSet<>();
+        while (r.size() < size) {
+            r.add((long) random.nextInt(valueLimit - 1) + 1);
+        }
+        return ImmutableSet.copyOf(r);
+    }
+
     static SubsetSums naiveSubsetSums(ImmutableSet<Long> S, long u) {
         return new SubsetSums(naiveSubsetSumsSet(S, u), Range.closed(baseOf(S), maxOf(S)), S.size());
     }
@@ -43,6 +60,25 @@ final class TestUtils {
                 .toSortedSet(Ordering.natural());
     }
 
+    static ImmutableSet<Long> naiveSubsetSumsSet(ImmutableSet<Long> S, long u, int k) {
+        return FluentIterable.from(Sets.powerSet(S))
+                .filter(subset -> !subset.isEmpty() && subset.size() <= k)
+                .transform(subset -> subset.stream().reduce(0L, (x, y) -> x + y))
+                .filter(sum -> sum < u)
+                .toSortedSet(Ordering.natural());
+    }
+
+    static long[] naiveSubsetSumCounts(ImmutableSet<Long> S, long u, long p) {
+        final long[] counts = new long[(int) u];
+        for (Set<Long> subset : Sets.powerSet(S)) {
+            final long sum = subset.stream().reduce(0L, (x, y) -> x + y);
+            if (sum < u) {
+                counts[(int) sum] = (counts[(int) sum] + 1) % p;
+            }
+        }
+        return counts;
+    }
+
     static Long baseOf(ImmutableSet<Long> s) {
         return Ordering.natural().min(s);
     }